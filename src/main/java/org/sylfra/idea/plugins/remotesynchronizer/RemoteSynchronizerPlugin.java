@@ -11,13 +11,17 @@ import com.intellij.openapi.util.JDOMExternalizable;
 import com.intellij.openapi.util.WriteExternalException;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowAnchor;
+import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.openapi.wm.ToolWindowManager;
 import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentFactory;
+import com.intellij.util.messages.MessageBusConnection;
 import org.jdom.Element;
 import org.jetbrains.annotations.NotNull;
+import org.sylfra.idea.plugins.remotesynchronizer.listener.ChangedFilesTracker;
 import org.sylfra.idea.plugins.remotesynchronizer.listener.CompilationListener;
 import org.sylfra.idea.plugins.remotesynchronizer.model.Config;
+import org.sylfra.idea.plugins.remotesynchronizer.synchronizing.SynchroManifestsManager;
 import org.sylfra.idea.plugins.remotesynchronizer.synchronizing.SynchronizerThreadManager;
 import org.sylfra.idea.plugins.remotesynchronizer.ui.ThreadConsolePane;
 import org.sylfra.idea.plugins.remotesynchronizer.ui.ToolPanel;
@@ -38,7 +42,7 @@ import java.net.URL;
 public class RemoteSynchronizerPlugin
         implements ProjectComponent, Configurable, JDOMExternalizable {
     public static final String PLUGIN_NAME = "RemoteSynchronizer";
-    private CompilationListener compilationListener = new CompilationListener();
+    private CompilationListener compilationListener;
     // Will be substituted by ANT
     private static final String PLUGIN_VERSION_TO_REPLACE = "@PLUGIN_VERSION@";
     private static final String PLUGIN_DEFAULT_VERSION = "dev";
@@ -58,6 +62,11 @@ public class RemoteSynchronizerPlugin
     private ConfigPathsManager pathManager;
     // Manage threaded copies
     private SynchronizerThreadManager copierThreadManager;
+    // Remembers files already copied to each target
+    private SynchroManifestsManager manifestsManager;
+    // Records files changed since last synchronization on compile
+    private ChangedFilesTracker changedFilesTracker;
+    private MessageBusConnection messageBusConnection;
     // Contains different consoles
     private ThreadConsolePane consolePane;
     // Settings panel
@@ -67,6 +76,9 @@ public class RemoteSynchronizerPlugin
         this.project = project;
 
         pathManager = new ConfigPathsManager(this);
+        manifestsManager = new SynchroManifestsManager(this);
+        changedFilesTracker = new ChangedFilesTracker(this);
+        compilationListener = new CompilationListener(this);
         consolePane = new ThreadConsolePane(this);
         copierThreadManager = new SynchronizerThreadManager(this);
     }
@@ -87,6 +99,14 @@ public class RemoteSynchronizerPlugin
         return pathManager;
     }
 
+    public SynchroManifestsManager getManifestsManager() {
+        return manifestsManager;
+    }
+
+    public ChangedFilesTracker getChangedFilesTracker() {
+        return changedFilesTracker;
+    }
+
     public ThreadConsolePane getConsolePane() {
         return consolePane;
     }
@@ -131,10 +151,13 @@ public class RemoteSynchronizerPlugin
 
     public void initComponent() {
         CompilerManager.getInstance(project).addCompilationStatusListener(compilationListener);
+        messageBusConnection = project.getMessageBus().connect();
+        messageBusConnection.subscribe(VirtualFileManager.VFS_CHANGES, changedFilesTracker);
     }
 
     public void disposeComponent() {
         CompilerManager.getInstance(project).removeCompilationStatusListener(compilationListener);
+        messageBusConnection.disconnect();
     }
 
     public void projectOpened() {
@@ -0,0 +1,178 @@
+package org.sylfra.idea.plugins.remotesynchronizer.listener;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.RefreshQueue;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import org.sylfra.idea.plugins.remotesynchronizer.RemoteSynchronizerPlugin;
+import org.sylfra.idea.plugins.remotesynchronizer.model.Config;
+import org.sylfra.idea.plugins.remotesynchronizer.model.ConfigListener;
+import org.sylfra.idea.plugins.remotesynchronizer.model.TargetMappings;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records, for each target, the paths changed since its last synchronization
+ * launched after a compilation.
+ * <p/>
+ * Changes are reported by VFS events and by the compiler for generated files.
+ * Changes of a target are recorded from its first incremental synchronization
+ * on : before it, or after configuration has changed, they are unknown and the
+ * whole output of the compilation is synchronized instead, as when
+ * synchronization is not incremental.
+ * <p/>
+ * Drained paths are given back by runs which did not complete successfully,
+ * so that they are synchronized again by the next run.
+ */
+public class ChangedFilesTracker implements BulkFileListener, ConfigListener {
+    private RemoteSynchronizerPlugin plugin;
+    // Only contains targets whose all changes are known
+    private final Map<TargetMappings, Set<String>> changedPaths;
+
+    public ChangedFilesTracker(RemoteSynchronizerPlugin plugin) {
+        this.plugin = plugin;
+        changedPaths = new HashMap<TargetMappings, Set<String>>();
+        plugin.getConfig().addConfigListener(this);
+    }
+
+    public void before(List<? extends VFileEvent> events) {
+    }
+
+    public void after(List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+            if (!(event.getFileSystem() instanceof LocalFileSystem))
+                continue;
+
+            if (event instanceof VFileMoveEvent) {
+                VFileMoveEvent moveEvent = (VFileMoveEvent) event;
+                addChangedPath(moveEvent.getOldParent().getPath() + '/'
+                      + moveEvent.getFile().getName());
+                addChangedPath(moveEvent.getFile().getPath());
+            } else if (event instanceof VFileCopyEvent) {
+                VFileCopyEvent copyEvent = (VFileCopyEvent) event;
+                addChangedPath(copyEvent.getNewParent().getPath() + '/'
+                      + copyEvent.getNewChildName());
+            } else if (event instanceof VFilePropertyChangeEvent) {
+                VFilePropertyChangeEvent propertyEvent = (VFilePropertyChangeEvent) event;
+                VirtualFile parent = propertyEvent.getFile().getParent();
+                if ((VirtualFile.PROP_NAME.equals(propertyEvent.getPropertyName()))
+                      && (parent != null)) {
+                    addChangedPath(parent.getPath() + '/' + propertyEvent.getOldValue());
+                    addChangedPath(propertyEvent.getFile().getPath());
+                }
+            } else {
+                // Creation, deletion or content change
+                addChangedPath(event.getPath());
+            }
+        }
+    }
+
+    /**
+     * Records a created, modified or deleted path for the targets mapping it
+     */
+    public synchronized void addChangedPath(String path) {
+        for (Map.Entry<TargetMappings, Set<String>> entry : changedPaths.entrySet()) {
+            if (plugin.getPathManager().isMapped(entry.getKey(), path))
+                entry.getValue().add(path);
+        }
+    }
+
+    /**
+     * Returns paths changed for the target since previous call, and records its
+     * next changes
+     *
+     * @return null if changes are unknown : the whole output of the
+     *         compilation must then be synchronized
+     */
+    public synchronized Set<String> drainChangedPaths(TargetMappings target) {
+        return changedPaths.put(target, new HashSet<String>());
+    }
+
+    /**
+     * Records again drained paths, after the run synchronizing them has failed
+     * or has been stopped. Ignored if changes of the target are no more known
+     */
+    public synchronized void restoreChangedPaths(TargetMappings target, Collection<String> paths) {
+        Set<String> targetPaths = changedPaths.get(target);
+        if (targetPaths != null)
+            targetPaths.addAll(paths);
+    }
+
+    /**
+     * Refreshes paths asynchronously, all in a single refresh, then
+     * runs <code>then</code> in the event dispatch thread, where
+     * {@link #findChangedFiles(Collection)} may be called
+     */
+    public void refreshChangedPaths(Collection<String> paths, final Runnable then) {
+        Set<VirtualFile> files = new LinkedHashSet<VirtualFile>();
+        for (String path : paths) {
+            // Files created since last refresh are found through their parent
+            VirtualFile f = findNearestFile(path);
+            if (f != null)
+                files.add(f);
+        }
+
+        if (files.isEmpty()) {
+            then.run();
+            return;
+        }
+
+        RefreshQueue.getInstance().refresh(true, true, new Runnable() {
+            public void run() {
+                // Refresh ends within a write action, files are looked up after it
+                ApplicationManager.getApplication().invokeLater(then);
+            }
+        }, files.toArray(new VirtualFile[files.size()]));
+    }
+
+    /**
+     * Returns the files of refreshed paths. A deleted file is replaced by its
+     * nearest existing parent, so that its remote copy is handled as an
+     * obsolete file.
+     */
+    public VirtualFile[] findChangedFiles(Collection<String> paths) {
+        Set<VirtualFile> result = new LinkedHashSet<VirtualFile>();
+        for (String path : paths) {
+            VirtualFile f = findNearestFile(path);
+            if (f != null)
+                result.add(f);
+        }
+
+        return result.toArray(new VirtualFile[result.size()]);
+    }
+
+    /**
+     * Looks up a path in the VFS, without refreshing it
+     */
+    private static VirtualFile findNearestFile(String path) {
+        LocalFileSystem fs = LocalFileSystem.getInstance();
+        while (true) {
+            VirtualFile result = fs.findFileByPath(path);
+            if (result != null)
+                return result;
+
+            int i = path.lastIndexOf('/');
+            if (i <= 0)
+                return null;
+            path = path.substring(0, i);
+        }
+    }
+
+    /**
+     * Mappings may have changed, all targets will be fully synchronized
+     */
+    public synchronized void configChanged(Config config) {
+        changedPaths.clear();
+    }
+}
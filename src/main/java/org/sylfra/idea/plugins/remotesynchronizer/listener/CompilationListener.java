@@ -2,36 +2,56 @@ package org.sylfra.idea.plugins.remotesynchronizer.listener;
 
 import com.intellij.openapi.compiler.CompilationStatusListener;
 import com.intellij.openapi.compiler.CompileContext;
-import com.intellij.openapi.roots.ProjectRootManager;
-import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.module.Module;
 import com.intellij.util.ui.UIUtil;
 import org.sylfra.idea.plugins.remotesynchronizer.RemoteSynchronizerPlugin;
 import org.sylfra.idea.plugins.remotesynchronizer.synchronizing.Synchronizer;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.PathsUtils;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
+ * Records the files generated by a compilation, and synchronizes them once it
+ * has finished, along with the output directories of the compiled modules
+ *
  * @author Thomas Demande
  */
 public class CompilationListener implements CompilationStatusListener {
+    private RemoteSynchronizerPlugin plugin;
+    // Files generated by the current compilation
+    private Set<String> generatedPaths;
+
+    public CompilationListener(RemoteSynchronizerPlugin plugin) {
+        this.plugin = plugin;
+        generatedPaths = new LinkedHashSet<String>();
+    }
 
     public void compilationFinished(boolean b, int i, int i2, final CompileContext compileContext) {
-        //To ensure usable sync feature, every file will be sync'ed after a compilation
-        if (compileContext != null) {
-            final VirtualFile[] virtualFiles = getAllSynchronizedFiles(RemoteSynchronizerPlugin.getInstance(compileContext.getProject()));
+        final Set<String> paths;
+        synchronized (this) {
+            paths = generatedPaths;
+            generatedPaths = new LinkedHashSet<String>();
+        }
 
-            // Sending synchronization order, in the UI thread. Compiler context might be null if no SDK has been defined in the project
+        // Compiler context might be null if no SDK has been defined in the project
+        if (compileContext != null) {
+            final Module[] modules = compileContext.getCompileScope().getAffectedModules();
+            // Sending synchronization order, in the UI thread
             UIUtil.invokeAndWaitIfNeeded(new Runnable() {
                 public void run() {
-                    Synchronizer.performSynchronization(RemoteSynchronizerPlugin.getInstance(compileContext.getProject()), virtualFiles, true);
+                    Synchronizer.performCompileSynchronization(plugin, paths, modules);
                 }
             });
         }
     }
 
-    public void fileGenerated(final String s, final String s2) {
-        //Nothing special to perform, as we take all files from Synchronizer config, not files just being compiled
-    }
-
-    private VirtualFile[] getAllSynchronizedFiles(RemoteSynchronizerPlugin plugin) {
-        return ProjectRootManager.getInstance(plugin.getProject()).getContentRoots();
+    public void fileGenerated(final String outputRoot, final String relativePath) {
+        String path = PathsUtils.toModelPath(outputRoot) + '/' + PathsUtils.toModelPath(relativePath);
+        plugin.getPathManager().getClassFilesIndex().fileGenerated(path);
+        plugin.getChangedFilesTracker().addChangedPath(path);
+        synchronized (this) {
+            generatedPaths.add(path);
+        }
     }
 }
@@ -18,6 +18,11 @@ public class Config implements Serializable
 {
   private final static String DEFAULT_LOG_FONT_FAMILY = "Monospaced";
   private final static int DEFAULT_LOG_FONT_SIZE = 12;
+  private final static int DEFAULT_MAX_CONSOLE_LINES = 10000;
+  private final static int DEFAULT_COPY_WORKERS_COUNT = 4;
+  private final static int DEFAULT_MAX_CONCURRENT_RUNS = 2;
+  private final static int DEFAULT_SYNC_REQUESTS_DELAY = 300;
+  private final static int DEFAULT_BLOCK_UPDATE_THRESHOLD = 16;
 
   private GeneralOptions generalOptions;
   private LogOptions logOptions;
@@ -93,6 +98,23 @@ public class Config implements Serializable
     return result;
   }
 
+  /**
+   * Generates the ids of targets loaded from settings saved before targets
+   * had one
+   *
+   * @return true if settings must be saved again to keep these ids
+   */
+  public boolean assignTargetIds()
+  {
+    boolean result = false;
+    for (TargetMappings targetMapping : targetMappings)
+    {
+      result |= targetMapping.assignId();
+    }
+
+    return result;
+  }
+
   public boolean hasActiveTarget()
   {
     for (TargetMappings targetMapping : targetMappings)
@@ -113,12 +135,23 @@ public class Config implements Serializable
     private boolean createMissingDirs;
     private boolean simulationMode;
     private boolean allowConcurrentRuns;
+    private int copyWorkersCount;
+    private boolean incrementalSyncOnCompile;
+    private int maxConcurrentRuns;
+    private int syncRequestsDelay;
+    private boolean shareTargetsReads;
+    private int blockUpdateThreshold;
 
     public GeneralOptions()
     {
       storeRelativePaths = true;
       saveBeforeCopy = true;
       createMissingDirs = true;
+      copyWorkersCount = DEFAULT_COPY_WORKERS_COUNT;
+      maxConcurrentRuns = DEFAULT_MAX_CONCURRENT_RUNS;
+      syncRequestsDelay = DEFAULT_SYNC_REQUESTS_DELAY;
+      shareTargetsReads = true;
+      blockUpdateThreshold = DEFAULT_BLOCK_UPDATE_THRESHOLD;
     }
 
     public boolean isStoreRelativePaths()
@@ -170,6 +203,90 @@ public class Config implements Serializable
     {
       this.allowConcurrentRuns = allowConcurrentRuns;
     }
+
+    /**
+     * Number of threads copying files in parallel for each target
+     */
+    public int getCopyWorkersCount()
+    {
+      return copyWorkersCount;
+    }
+
+    public void setCopyWorkersCount(int copyWorkersCount)
+    {
+      this.copyWorkersCount = copyWorkersCount;
+    }
+
+    /**
+     * If true, synchronizations launched after a compilation only handle files
+     * changed since the previous one
+     */
+    public boolean isIncrementalSyncOnCompile()
+    {
+      return incrementalSyncOnCompile;
+    }
+
+    public void setIncrementalSyncOnCompile(boolean incrementalSyncOnCompile)
+    {
+      this.incrementalSyncOnCompile = incrementalSyncOnCompile;
+    }
+
+    /**
+     * Maximum number of synchronizations running at the same time for a
+     * target, when concurrent runs are allowed
+     */
+    public int getMaxConcurrentRuns()
+    {
+      return maxConcurrentRuns;
+    }
+
+    public void setMaxConcurrentRuns(int maxConcurrentRuns)
+    {
+      this.maxConcurrentRuns = maxConcurrentRuns;
+    }
+
+    /**
+     * Delay in milliseconds during which synchronization requests for a target
+     * are merged before being launched
+     */
+    public int getSyncRequestsDelay()
+    {
+      return syncRequestsDelay;
+    }
+
+    public void setSyncRequestsDelay(int syncRequestsDelay)
+    {
+      this.syncRequestsDelay = syncRequestsDelay;
+    }
+
+    /**
+     * If true, requests for the same files waiting for different targets are
+     * launched together, walking the selection and reading source files once
+     * for all of them
+     */
+    public boolean isShareTargetsReads()
+    {
+      return shareTargetsReads;
+    }
+
+    public void setShareTargetsReads(boolean shareTargetsReads)
+    {
+      this.shareTargetsReads = shareTargetsReads;
+    }
+
+    /**
+     * Size in megabytes from which only changed blocks of a file are written,
+     * for targets skipping unchanged files. 0 always writes whole files
+     */
+    public int getBlockUpdateThreshold()
+    {
+      return blockUpdateThreshold;
+    }
+
+    public void setBlockUpdateThreshold(int blockUpdateThreshold)
+    {
+      this.blockUpdateThreshold = blockUpdateThreshold;
+    }
   }
 
   public final static class LogOptions implements Serializable
@@ -181,11 +298,13 @@ public class Config implements Serializable
     private boolean autoPopup;
     private String logFontFamily;
     private int logFontSize;
+    private int maxConsoleLines;
 
     public LogOptions()
     {
       logFontFamily = DEFAULT_LOG_FONT_FAMILY;
       logFontSize = DEFAULT_LOG_FONT_SIZE;
+      maxConsoleLines = DEFAULT_MAX_CONSOLE_LINES;
       logExludedPaths = true;
       logIdenticalPaths = true;
       clearBeforeSynchro = false;
@@ -261,5 +380,19 @@ public class Config implements Serializable
     {
       this.autoPopup = autoPopup;
     }
+
+    /**
+     * Oldest lines of a console are removed beyond this count, 0 keeps all
+     * lines
+     */
+    public int getMaxConsoleLines()
+    {
+      return maxConsoleLines;
+    }
+
+    public void setMaxConsoleLines(int maxConsoleLines)
+    {
+      this.maxConsoleLines = maxConsoleLines;
+    }
   }
 }
@@ -2,6 +2,8 @@ package org.sylfra.idea.plugins.remotesynchronizer.model;
 
 /**
  * Store copy results,  ie. numbers of success, failures, ...
+ * <p/>
+ * Counters may be updated concurrently by several copy workers
  *
  * @author <a href="mailto=sylfradev@yahoo.fr">Sylvain FRANCOIS</a>
  */
@@ -12,58 +14,73 @@ public class SyncronizingStatsInfo
   private int ignoredCount;
   private int excludedCount;
   private int deletedCount;
+  private long bytesSaved;
 
-  public int getSuccessCount()
+  public synchronized int getSuccessCount()
   {
     return successCount;
   }
 
-  public int getFailuresCount()
+  public synchronized int getFailuresCount()
   {
     return failuresCount;
   }
 
-  public int getExcludedCount()
+  public synchronized int getExcludedCount()
   {
     return excludedCount;
   }
 
-  public int getIgnoredCount()
+  public synchronized int getIgnoredCount()
   {
     return ignoredCount;
   }
 
-  public int getDeletedCount()
+  public synchronized int getDeletedCount()
   {
     return deletedCount;
   }
 
-  public void addSuccess()
+  /**
+   * Number of bytes not written since unchanged, when only changed blocks of
+   * large files have been written
+   */
+  public synchronized long getBytesSaved()
+  {
+    return bytesSaved;
+  }
+
+  public synchronized void addSuccess()
   {
     successCount++;
   }
 
-  public void addFailure()
+  public synchronized void addFailure()
   {
     failuresCount++;
   }
 
-  public void addIgnored()
+  public synchronized void addIgnored()
   {
     ignoredCount++;
   }
 
-  public void addExcluded()
+  public synchronized void addExcluded()
   {
     excludedCount++;
   }
 
-  public void addDeleted()
+  public synchronized void addDeleted()
   {
     deletedCount++;
   }
 
-  public boolean hasFailures()
+  public synchronized void addBytesSaved(long count)
+  {
+    bytesSaved += count;
+  }
+
+  public synchronized boolean hasFailures()
   {
     return failuresCount > 0;
   }
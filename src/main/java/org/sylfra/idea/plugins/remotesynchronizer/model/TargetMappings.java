@@ -1,6 +1,7 @@
 package org.sylfra.idea.plugins.remotesynchronizer.model;
 
 import java.io.Serializable;
+import java.util.UUID;
 
 public class TargetMappings implements Serializable {
     public static final String[] DEFAULT_EXCLUDES_COPY = new String[]
@@ -10,10 +11,17 @@ public class TargetMappings implements Serializable {
                 "**/CVS/*",
                 "**/*.java"
           };
+    private static final int DEFAULT_CHUNKED_COPY_THRESHOLD = 64;
+    private static final int DEFAULT_COPY_CHUNK_SIZE = 16;
 
+    private String id;
     private String name;
     private boolean active;
     private boolean executeOnCompile;
+    private boolean useManifest;
+    private boolean linkFiles;
+    private int chunkedCopyThreshold;
+    private int copyChunkSize;
     private SynchroMapping[] synchroMappings;
     private String[] excludedCopyPaths;
     private String[] excludedDeletePaths;
@@ -24,6 +32,34 @@ public class TargetMappings implements Serializable {
         synchroMappings = new SynchroMapping[0];
         excludedCopyPaths = DEFAULT_EXCLUDES_COPY;
         excludedDeletePaths = new String[0];
+        chunkedCopyThreshold = DEFAULT_CHUNKED_COPY_THRESHOLD;
+        copyChunkSize = DEFAULT_COPY_CHUNK_SIZE;
+    }
+
+    /**
+     * Identifies this target, whatever its name. Generated on first use, then
+     * stored with settings
+     */
+    public String getId() {
+        if (id == null)
+            id = UUID.randomUUID().toString();
+        return id;
+    }
+
+    /**
+     * Generates the id of a target loaded from settings saved before targets
+     * had one
+     *
+     * @return false if target already had an id
+     */
+    public boolean assignId() {
+        boolean assigned = (id == null);
+        getId();
+        return assigned;
+    }
+
+    public void setId(String id) {
+        this.id = id;
     }
 
     public String getName() {
@@ -73,4 +109,51 @@ public class TargetMappings implements Serializable {
     public void setExecuteOnCompile(boolean executeOnCompile) {
         this.executeOnCompile = executeOnCompile;
     }
+
+    /**
+     * Should files unchanged since their last copy be skipped without checking
+     * the target ?
+     */
+    public boolean isUseManifest() {
+        return useManifest;
+    }
+
+    public void setUseManifest(boolean useManifest) {
+        this.useManifest = useManifest;
+    }
+
+    /**
+     * Should files be hard linked instead of copied, when their destination is
+     * on the same file system ?
+     */
+    public boolean isLinkFiles() {
+        return linkFiles;
+    }
+
+    public void setLinkFiles(boolean linkFiles) {
+        this.linkFiles = linkFiles;
+    }
+
+    /**
+     * Size in megabytes from which a file is copied by chunks copied
+     * concurrently. 0 always copies files on a single thread
+     */
+    public int getChunkedCopyThreshold() {
+        return chunkedCopyThreshold;
+    }
+
+    public void setChunkedCopyThreshold(int chunkedCopyThreshold) {
+        this.chunkedCopyThreshold = chunkedCopyThreshold;
+    }
+
+    /**
+     * Size in megabytes of the chunks of a file copied by chunks
+     */
+    public int getCopyChunkSize() {
+        return copyChunkSize;
+    }
+
+    public void setCopyChunkSize(int copyChunkSize) {
+        this.copyChunkSize = copyChunkSize;
+    }
 }
@@ -0,0 +1,112 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+import org.sylfra.idea.plugins.remotesynchronizer.utils.ContentDigest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Updates a large destination file in place, writing only the blocks which
+ * changed since its last copy.
+ * <p/>
+ * Hashes of the destination blocks are those recorded by the manifest when it
+ * was written, so the destination is never read : only changed blocks go
+ * through the network. Blocks are compared at the same offsets, so content
+ * inserted or removed in the middle of a file makes the following blocks
+ * written again.
+ * <p/>
+ * Source blocks are hashed as they are read, so the hashes recorded once
+ * updated are those of the bytes now in the destination.
+ */
+final class BlockUpdater {
+    private BlockUpdater() {
+    }
+
+    /**
+     * Writes changed blocks of source file to destination file, then
+     * truncates destination to the size of source
+     *
+     * @param blockHashes hashes of the destination blocks, as recorded by
+     *                    {@link SynchroManifest#recordCopy(String, String, long, ContentDigest)}
+     * @param digest      receives the content of source file, must hash blocks
+     * @return number of bytes not written, since unchanged
+     * @throws IOException if the update fails. Destination file has then been
+     *                     removed
+     */
+    static long update(File srcFile, File destFile, long lastModified, String blockHashes,
+                       ContentDigest digest)
+          throws IOException {
+        long position = 0;
+        long written = 0;
+        FileInputStream in = new FileInputStream(srcFile);
+        try {
+            RandomAccessFile out = new RandomAccessFile(destFile, "rw");
+            boolean updated = false;
+            try {
+                FileChannel inChannel = in.getChannel();
+                FileChannel outChannel = out.getChannel();
+                ByteBuffer buffer = ByteBuffer.allocate(ContentDigest.BLOCK_SIZE);
+                int block = 0;
+                int count;
+                while ((count = readBlock(inChannel, buffer)) > 0) {
+                    digest.update(buffer.array(), 0, count);
+                    // Only the last block is shorter
+                    if (count < ContentDigest.BLOCK_SIZE)
+                        digest.finish();
+                    if (!isRecorded(blockHashes, block, digest.getBlockHash(block))) {
+                        buffer.flip();
+                        long blockPosition = position;
+                        while (buffer.hasRemaining())
+                            blockPosition += outChannel.write(buffer, blockPosition);
+                        written += count;
+                    }
+                    position += count;
+                    block++;
+                }
+
+                if (outChannel.size() > position)
+                    outChannel.truncate(position);
+                updated = true;
+            } finally {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    updated = false;
+                }
+                if (!updated)
+                    destFile.delete();
+            }
+        } finally {
+            in.close();
+        }
+
+        destFile.setLastModified(lastModified);
+        return position - written;
+    }
+
+    /**
+     * Fills buffer from the current position of the channel
+     *
+     * @return number of bytes read, less than the buffer capacity at the end
+     *         of the channel only
+     */
+    private static int readBlock(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1)
+                break;
+        }
+
+        return buffer.position();
+    }
+
+    private static boolean isRecorded(String blockHashes, int block, String hash) {
+        int offset = block * ContentDigest.HASH_LENGTH;
+        return (blockHashes.length() >= offset + ContentDigest.HASH_LENGTH)
+              && (blockHashes.regionMatches(offset, hash, 0, ContentDigest.HASH_LENGTH));
+    }
+}
@@ -0,0 +1,37 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+import org.sylfra.idea.plugins.remotesynchronizer.utils.PathPrefixSet;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Paths synchronized after a compilation whose changes are not tracked : the
+ * output directories of the compiled modules, then the generated files out of
+ * them.
+ * <p/>
+ * Output directories are selected as a whole, so that remote copies of class
+ * files deleted since the previous compilation are found obsolete.
+ */
+final class CompileSelection {
+    private CompileSelection() {
+    }
+
+    /**
+     * @param outputRootPaths model paths of the output directories of the
+     *                        compiled modules
+     * @param generatedPaths  model paths of the files generated by the compiler
+     */
+    static Set<String> getPaths(Collection<String> outputRootPaths, Collection<String> generatedPaths) {
+        Set<String> result = new LinkedHashSet<String>(outputRootPaths);
+        PathPrefixSet outputRoots = new PathPrefixSet(
+              outputRootPaths.toArray(new String[outputRootPaths.size()]));
+        for (String path : generatedPaths) {
+            if (!outputRoots.contains(path))
+                result.add(path);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,158 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies source paths while they are being produced.
+ * <p/>
+ * Submitted paths are resolved to remote paths by a single resolver task,
+ * which hands copies over to copy workers. Stages are joined by bounded
+ * queues : a stage waits when the next one is late, so memory does not depend
+ * on the size of the selection, and the first copies start as soon as the
+ * first paths are known.
+ * <p/>
+ * Every stage stops waiting as soon as the thread is no more active.
+ */
+class CopyPipeline implements PathSink {
+    private static final int PATHS_QUEUE_CAPACITY = 1024;
+    private static final int COPIES_QUEUE_CAPACITY = 256;
+    // Delay between two checks of the thread state while waiting on a queue
+    private static final long POLL_DELAY = 100;
+
+    // Marks the end of submitted paths, compared by identity
+    private static final String END_OF_PATHS = new String("END_OF_PATHS");
+
+    private final SynchronizerThread thread;
+    private final int workersCount;
+    private final BlockingQueue<String> srcPaths;
+    private final BlockingQueue<Copy> copies;
+    private final ExecutorService executor;
+
+    /**
+     * @param workersCount  number of copy workers
+     * @param threadFactory creates threads of the resolver and of the workers
+     */
+    CopyPipeline(SynchronizerThread thread, int workersCount, ThreadFactory threadFactory) {
+        this.thread = thread;
+        this.workersCount = workersCount;
+        srcPaths = new ArrayBlockingQueue<String>(PATHS_QUEUE_CAPACITY);
+        copies = new ArrayBlockingQueue<Copy>(COPIES_QUEUE_CAPACITY);
+        executor = Executors.newFixedThreadPool(workersCount + 1, threadFactory);
+    }
+
+    /**
+     * Starts resolver and copy workers
+     */
+    void start() {
+        executor.execute(new Runnable() {
+            public void run() {
+                resolvePaths();
+            }
+        });
+
+        for (int i = 0; i < workersCount; i++) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    copyFiles();
+                }
+            });
+        }
+    }
+
+    /**
+     * Submits a source path to copy, waiting for room in the queue if needed
+     *
+     * @return false if thread is no more active
+     */
+    public boolean submit(String srcPath) {
+        return put(srcPaths, srcPath);
+    }
+
+    /**
+     * No more path will be submitted. Waits for current copies to end, even if
+     * thread has been stopped
+     */
+    void finish() {
+        put(srcPaths, END_OF_PATHS);
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // Copies still running
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void resolvePaths() {
+        String srcPath;
+        while (((srcPath = take(srcPaths)) != null) && (srcPath != END_OF_PATHS)) {
+            String destPath = thread.resolveRemotePath(srcPath);
+            if ((destPath != null) && (!put(copies, new Copy(srcPath, destPath))))
+                return;
+        }
+
+        // Each worker ends on its own end mark
+        for (int i = 0; i < workersCount; i++) {
+            if (!put(copies, Copy.END))
+                return;
+        }
+    }
+
+    private void copyFiles() {
+        Copy copy;
+        while (((copy = take(copies)) != null) && (copy != Copy.END))
+            thread.copyFile(copy.srcPath, copy.destPath);
+    }
+
+    /**
+     * @return false if thread is no more active
+     */
+    private <T> boolean put(BlockingQueue<T> queue, T element) {
+        try {
+            while (thread.isActive()) {
+                if (queue.offer(element, POLL_DELAY, TimeUnit.MILLISECONDS))
+                    return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return false;
+    }
+
+    /**
+     * @return null if thread is no more active
+     */
+    private <T> T take(BlockingQueue<T> queue) {
+        try {
+            while (thread.isActive()) {
+                T result = queue.poll(POLL_DELAY, TimeUnit.MILLISECONDS);
+                if (result != null)
+                    return result;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return null;
+    }
+
+    private static final class Copy {
+        private static final Copy END = new Copy(null, null);
+
+        private final String srcPath;
+        private final String destPath;
+
+        private Copy(String srcPath, String destPath) {
+            this.srcPath = srcPath;
+            this.destPath = destPath;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads synchronizing the same selection with different targets, launched
+ * together.
+ * <p/>
+ * The selection is walked once, on a thread of its own, each path being put
+ * in the share of the threads which may copy it. Each thread then submits its
+ * share to its own pipeline : a slow target only holds the walk back once its
+ * share is full, other targets keep copying meanwhile. Source files are read
+ * once through a shared cache, then written to each target by its own
+ * workers.
+ * <p/>
+ * Each thread keeps its own console, stats, manifest and deletions, and may
+ * be stopped or interrupted on its own.
+ */
+class FanOutGroup {
+    // Maximum size of source contents kept for late targets, in bytes
+    private static final long SOURCE_CACHE_CAPACITY = 32 * 1024 * 1024;
+    // Maximum number of paths walked ahead of a thread
+    private static final int SHARE_CAPACITY = 16 * 1024;
+    // Delay between two checks of the thread state while waiting on a share
+    private static final long POLL_DELAY = 100;
+
+    private final SynchronizerThread[] threads;
+    private final Share[] shares;
+    private final SourceCache sourceCache;
+    private final SelectionPlanner planner;
+    private final ThreadFactory plannerThreadFactory;
+    // Guarded by this
+    private boolean walkStarted;
+    private volatile boolean walked;
+
+    FanOutGroup(List<SynchronizerThread> threads) {
+        this.threads = threads.toArray(new SynchronizerThread[threads.size()]);
+        shares = new Share[this.threads.length];
+        for (int i = 0; i < shares.length; i++)
+            shares[i] = new Share(this.threads[i]);
+        sourceCache = new SourceCache(this.threads.length, SOURCE_CACHE_CAPACITY);
+        planner = new SelectionPlanner(this.threads, shares);
+
+        StringBuilder targetNames = new StringBuilder();
+        for (SynchronizerThread thread : this.threads) {
+            if (targetNames.length() > 0)
+                targetNames.append(", ");
+            targetNames.append(thread.getTargetMappings().getName());
+        }
+        plannerThreadFactory = new SynchronizerThread.WorkerThreadFactory(targetNames.toString(),
+              "planner ");
+    }
+
+    SourceCache getSourceCache() {
+        return sourceCache;
+    }
+
+    /**
+     * Returns the planner which has walked the selection, once {@link #plan}
+     * has returned
+     */
+    SelectionPlanner getPlanner() {
+        return planner;
+    }
+
+    /**
+     * Called by each thread of the group with its started pipeline. The first
+     * thread starts the walk of the selection, then each thread submits its
+     * share of paths to its pipeline until the walk ends
+     *
+     * @return false if selection has not been walked entirely, or if thread has
+     *         been stopped or interrupted meanwhile
+     */
+    boolean plan(SynchronizerThread thread, CopyPipeline pipeline, VirtualFile[] selectedFiles) {
+        Share share = shares[indexOf(thread)];
+        startWalk(selectedFiles);
+
+        try {
+            String path;
+            while ((path = share.take()) != null) {
+                if (!pipeline.submit(path))
+                    return false;
+            }
+        } finally {
+            // A stopped thread, or a resumed one walking alone, takes no more
+            // path
+            share.close();
+        }
+
+        return (walked) && (thread.isActive());
+    }
+
+    private synchronized void startWalk(final VirtualFile[] selectedFiles) {
+        if (walkStarted)
+            return;
+
+        walkStarted = true;
+        // Daemon thread : a walk held by a read action never prevents the IDE
+        // from exiting. An interrupted walk stops submitting paths
+        Thread t = plannerThreadFactory.newThread(new Runnable() {
+            public void run() {
+                try {
+                    walked = (planner.plan(selectedFiles)) && (!Thread.currentThread().isInterrupted());
+                } finally {
+                    for (Share share : shares)
+                        share.end();
+                }
+            }
+        });
+        t.start();
+    }
+
+    private int indexOf(SynchronizerThread thread) {
+        for (int i = 0; i < threads.length; i++) {
+            if (threads[i] == thread)
+                return i;
+        }
+
+        throw new IllegalArgumentException("Thread is not a member of this group");
+    }
+
+    /**
+     * Paths walked for a thread, not submitted to its pipeline yet
+     */
+    private static final class Share implements PathSink {
+        private final SynchronizerThread thread;
+        private final BlockingQueue<String> paths;
+        // No more path will be put
+        private volatile boolean ended;
+        // No more path will be taken
+        private volatile boolean closed;
+
+        private Share(SynchronizerThread thread) {
+            this.thread = thread;
+            paths = new ArrayBlockingQueue<String>(SHARE_CAPACITY);
+        }
+
+        /**
+         * Called by the walk, waits while the share is full
+         *
+         * @return false if thread does not take paths anymore
+         */
+        public boolean submit(String srcPath) {
+            try {
+                while ((!closed) && (thread.isActive())) {
+                    if (paths.offer(srcPath, POLL_DELAY, TimeUnit.MILLISECONDS))
+                        return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return false;
+        }
+
+        private void end() {
+            ended = true;
+        }
+
+        private void close() {
+            closed = true;
+        }
+
+        /**
+         * @return null once the walk has ended and every path has been taken,
+         *         or if thread is no more active
+         */
+        private String take() {
+            try {
+                while (thread.isActive()) {
+                    // Paths put before the end are taken first
+                    boolean last = ended;
+                    String result = paths.poll(POLL_DELAY, TimeUnit.MILLISECONDS);
+                    if ((result != null) || (last))
+                        return result;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+import org.sylfra.idea.plugins.remotesynchronizer.model.TargetMappings;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.ConfigPathsManager;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.FileAttributes;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.PathPrefixSet;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.PathsUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Looks for obsolete files within destination directories, ie. remote files
+ * contained in selection whose source file no longer exists or is excluded
+ * from copy.
+ * <p/>
+ * Each remote directory is listed by its own task, so that directories are
+ * listed in parallel. A remote directory reached from several destinations is
+ * only listed once. Source files existence is checked against the listing of
+ * their directory, fetched once per directory. Directories whose files are all
+ * excluded from deletion are not listed.
+ * <p/>
+ * Obsolete files are returned in the order of a recursive walk, parents
+ * before their children.
+ */
+class ObsoleteFilesScanner {
+    private final SynchronizerThread thread;
+    private final ConfigPathsManager pathManager;
+    private final TargetMappings targetMappings;
+    private final PathPrefixSet selection;
+    private final ExecutorService executor;
+
+    // Names of the files of source directories, by directory path
+    private final ConcurrentMap<String, Set<String>> srcListings;
+    private final ConcurrentMap<File, Boolean> scannedDirs;
+    private final List<Node> roots;
+    private final AtomicInteger pendingTasks;
+    private final CountDownLatch finished;
+    private final AtomicInteger dirsCount;
+    private final AtomicInteger filesCount;
+
+    /**
+     * @param selectedPaths paths of selected files, only obsolete files whose
+     *                      source is contained in these paths are returned
+     * @param executor      runs directory scans
+     */
+    ObsoleteFilesScanner(SynchronizerThread thread, String[] selectedPaths,
+                         ExecutorService executor) {
+        this.thread = thread;
+        this.executor = executor;
+        pathManager = thread.getPlugin().getPathManager();
+        targetMappings = thread.getTargetMappings();
+
+        selection = new PathPrefixSet(selectedPaths);
+
+        srcListings = new ConcurrentHashMap<String, Set<String>>();
+        scannedDirs = new ConcurrentHashMap<File, Boolean>();
+        roots = new ArrayList<Node>();
+        pendingTasks = new AtomicInteger();
+        finished = new CountDownLatch(1);
+        dirsCount = new AtomicInteger();
+        filesCount = new AtomicInteger();
+    }
+
+    /**
+     * Starts scanning these destination directories
+     */
+    void start(List<File> destDirs) {
+        // Prevents the scan from ending before all roots have been submitted
+        pendingTasks.incrementAndGet();
+        for (File destDir : destDirs) {
+            FileAttributes attributes = FileAttributes.read(destDir);
+            if (attributes.exists()) {
+                Node root = createNode(destDir, attributes.isDirectory());
+                if (root != null)
+                    roots.add(root);
+            }
+        }
+        taskDone();
+    }
+
+    /**
+     * Waits for the scan to end
+     *
+     * @return false if the scan is still running after this delay
+     */
+    boolean awaitTermination(long timeout) throws InterruptedException {
+        return finished.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    int getDirsCount() {
+        return dirsCount.get();
+    }
+
+    int getFilesCount() {
+        return filesCount.get();
+    }
+
+    /**
+     * Returns obsolete files found, parents first
+     */
+    List<File> getObsoleteFiles() {
+        List<File> result = new ArrayList<File>();
+        for (Node root : roots)
+            addObsoleteFiles(root, result);
+
+        return result;
+    }
+
+    private void addObsoleteFiles(Node node, List<File> result) {
+        if (node.obsolete)
+            result.add(node.file);
+
+        List<Node> children = node.children;
+        if (children != null) {
+            for (Node child : children)
+                addObsoleteFiles(child, result);
+        }
+    }
+
+    /**
+     * Returns a node for this remote file, or null if the file is not
+     * obsolete and is not a directory to scan
+     */
+    private Node createNode(File f, boolean isDirectory) {
+        String path = PathsUtils.toModelPath(f);
+        // Such a directory is excluded from deletion too
+        if ((isDirectory) && (pathManager.excludesChildrenFromDeletion(targetMappings, path)))
+            return null;
+
+        boolean obsolete = isObsolete(path);
+        boolean scan = isDirectory && (scannedDirs.putIfAbsent(f, Boolean.TRUE) == null);
+        if ((!obsolete) && (!scan))
+            return null;
+
+        Node result = new Node(f, obsolete);
+        if (scan)
+            submit(result);
+
+        return result;
+    }
+
+    private void submit(final Node node) {
+        pendingTasks.incrementAndGet();
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        scan(node);
+                    } finally {
+                        taskDone();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Synchronization has been stopped
+            taskDone();
+        }
+    }
+
+    private void taskDone() {
+        if (pendingTasks.decrementAndGet() == 0)
+            finished.countDown();
+    }
+
+    /**
+     * Lists a remote directory and submits the scan of its sub-directories
+     */
+    private void scan(Node dirNode) {
+        if (!thread.isActive())
+            return;
+
+        dirsCount.incrementAndGet();
+        File[] children = dirNode.file.listFiles();
+        if ((children == null) || (children.length == 0)) {
+            dirNode.children = Collections.emptyList();
+            return;
+        }
+
+        List<Node> childNodes = new ArrayList<Node>();
+        for (File child : children) {
+            if (!thread.isActive())
+                break;
+
+            boolean isDirectory = child.isDirectory();
+            if (!isDirectory)
+                filesCount.incrementAndGet();
+
+            Node childNode = createNode(child, isDirectory);
+            if (childNode != null)
+                childNodes.add(childNode);
+        }
+
+        dirNode.children = childNodes;
+    }
+
+    /**
+     * Is this remote file obsolete ?
+     */
+    private boolean isObsolete(String destPath) {
+        String srcPath = pathManager.getSrcPath(targetMappings, destPath);
+
+        return (srcPath != null)
+              && (selection.contains(srcPath))
+              && ((!srcFileExists(srcPath))
+              || (pathManager.isExcludedFromCopy(targetMappings, srcPath)));
+    }
+
+    /**
+     * Checks a source file exists, using the listing of its directory
+     */
+    private boolean srcFileExists(String srcPath) {
+        int i = srcPath.lastIndexOf('/');
+        if (i == -1)
+            return new File(srcPath).exists();
+
+        String dirPath = srcPath.substring(0, i);
+        Set<String> names = srcListings.get(dirPath);
+        if (names == null) {
+            String[] list = new File(dirPath.length() == 0 ? "/" : dirPath).list();
+            names = (list == null)
+                  ? Collections.<String>emptySet()
+                  : new HashSet<String>(Arrays.asList(list));
+            srcListings.putIfAbsent(dirPath, names);
+        }
+
+        if (names.contains(srcPath.substring(i + 1)))
+            return true;
+
+        // Name may only differ by case on some file systems
+        return (!names.isEmpty()) && (new File(srcPath).exists());
+    }
+
+    /**
+     * A remote file which is obsolete, or a remote directory which is scanned
+     */
+    private static final class Node {
+        private final File file;
+        private final boolean obsolete;
+        // Set by the scan of this directory
+        private volatile List<Node> children;
+
+        private Node(File file, boolean obsolete) {
+            this.file = file;
+            this.obsolete = obsolete;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+/**
+ * Receives the paths produced by a {@link SelectionPlanner} for a thread
+ */
+interface PathSink {
+    /**
+     * Submits a source path, waiting for room if needed
+     *
+     * @return false if no more path is accepted
+     */
+    boolean submit(String srcPath);
+}
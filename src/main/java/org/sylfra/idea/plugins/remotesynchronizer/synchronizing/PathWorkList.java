@@ -0,0 +1,67 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Work list of paths to handle during a synchronization.
+ * <p/>
+ * Elements are kept in insertion order and an element is only added once,
+ * even after it has been removed, until the list is cleared. Adding and
+ * removing elements take constant time.
+ * <p/>
+ * Methods are synchronized, so copy workers may share the same list.
+ */
+class PathWorkList<T> {
+    private final Set<T> known;
+    private final ArrayDeque<T> pending;
+
+    public PathWorkList() {
+        known = new HashSet<T>();
+        pending = new ArrayDeque<T>();
+    }
+
+    /**
+     * Adds an element at the end of the list
+     *
+     * @return false if element has already been added
+     */
+    public synchronized boolean add(T element) {
+        if (!known.add(element))
+            return false;
+
+        pending.addLast(element);
+        return true;
+    }
+
+    /**
+     * Removes the first added element, or returns null if list is empty
+     */
+    public synchronized T removeFirst() {
+        return pending.pollFirst();
+    }
+
+    /**
+     * Removes the last added element, or returns null if list is empty
+     */
+    public synchronized T removeLast() {
+        return pending.pollLast();
+    }
+
+    /**
+     * Number of elements not removed yet
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    public synchronized void clear() {
+        known.clear();
+        pending.clear();
+    }
+}
@@ -0,0 +1,389 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.sylfra.idea.plugins.remotesynchronizer.model.TargetMappings;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.ConfigPathsManager;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.PathPrefixSet;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.PathsUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Expands selected files into the plain paths to synchronize, submitted to the
+ * copy pipeline as soon as they are known.
+ * <p/>
+ * Several threads synchronizing the same selection with different targets may
+ * share a planner : each path is then submitted to the share of each thread
+ * which may copy it, until it is no more active.
+ * <p/>
+ * VFS and project structure are only read here, in short read actions : one
+ * for the selection roots, then one per directory, covering its listing and
+ * the output location of its sources. Write actions are never delayed longer
+ * than this, and planning stops as soon as no thread is active anymore.
+ * Class files are then looked up in the output directories index, out of the
+ * read action.
+ * <p/>
+ * Copies, deletions and remote scans only use the paths produced here, and
+ * run without holding any lock.
+ * <p/>
+ * A path is produced once without remembering produced paths : selected files
+ * contained in another selected directory are ignored, and class files are
+ * only looked up when the walk won't reach them.
+ * <p/>
+ * Directories which no mapping of a target can reach, whose files are all
+ * excluded from copy, or which are excluded by the IDE are not walked for this
+ * target, they are only counted. A source directory is reached as well when
+ * the class files of its sources may be mapped : if its own files are all
+ * excluded from copy, it is only walked to look up these class files.
+ * Selected directories are always walked.
+ */
+class SelectionPlanner {
+    private final SynchronizerThread[] threads;
+    private final PathSink[] sinks;
+    // Do sinks still accept paths ?
+    private final boolean[] accepting;
+    private final ConfigPathsManager pathManager;
+    // Directories not listed yet, last one is listed first
+    private final ArrayDeque<PendingDir> pendingDirs;
+    // Files and sources found by the last read action, in the same directory
+    private final List<String> paths;
+    private final List<JavaSource> javaSources;
+    // Threads receiving files found by the last read action, and threads for
+    // which their directory is walked
+    private boolean[] filesThreads;
+    private boolean[] walkedThreads;
+    private final List<String> selectedDirPaths;
+    private PathPrefixSet selectedDirs;
+    private String[] selectedPaths;
+    private boolean dirSelected;
+    private final int[] skippedDirsCounts;
+
+    /**
+     * @param pipeline receives paths of selected files and of their class
+     *                 files
+     */
+    SelectionPlanner(SynchronizerThread thread, CopyPipeline pipeline) {
+        this(new SynchronizerThread[]{thread}, new PathSink[]{pipeline});
+    }
+
+    /**
+     * @param sinks receive paths for the threads, in the same order
+     */
+    SelectionPlanner(SynchronizerThread[] threads, PathSink[] sinks) {
+        this.threads = threads;
+        this.sinks = sinks;
+        accepting = new boolean[threads.length];
+        pathManager = threads[0].getPlugin().getPathManager();
+        pendingDirs = new ArrayDeque<PendingDir>();
+        paths = new ArrayList<String>();
+        javaSources = new ArrayList<JavaSource>();
+        selectedDirPaths = new ArrayList<String>();
+        skippedDirsCounts = new int[threads.length];
+    }
+
+    /**
+     * Expands selected files
+     *
+     * @return false if all threads have been stopped or interrupted meanwhile
+     */
+    boolean plan(final VirtualFile[] selectedFiles) {
+        Arrays.fill(accepting, true);
+        Arrays.fill(skippedDirsCounts, 0);
+        selectedPaths = new String[0];
+        dirSelected = false;
+        pendingDirs.clear();
+        selectedDirPaths.clear();
+        if (selectedFiles == null)
+            return true;
+
+        runReadAction(new Runnable() {
+            public void run() {
+                addRoots(selectedFiles);
+            }
+        });
+        selectedDirs = new PathPrefixSet(
+              selectedDirPaths.toArray(new String[selectedDirPaths.size()]));
+        if (!submitPaths())
+            return false;
+
+        while (!pendingDirs.isEmpty()) {
+            if (!isActive())
+                return false;
+
+            final PendingDir dir = pendingDirs.pollLast();
+            runReadAction(new Runnable() {
+                public void run() {
+                    if (dir.dir.isValid())
+                        addFiles(dir.dir.getChildren(), dir);
+                }
+            });
+            if (!submitPaths())
+                return false;
+        }
+
+        return isActive();
+    }
+
+    /**
+     * Is a thread still active and accepting paths ?
+     */
+    private boolean isActive() {
+        for (int i = 0; i < threads.length; i++) {
+            if ((accepting[i]) && (threads[i].isActive()))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Submits a path to the sinks of these threads still accepting paths
+     *
+     * @return false if no sink accepts paths anymore
+     */
+    private boolean submit(String path, boolean[] targetThreads) {
+        boolean result = false;
+        for (int i = 0; i < sinks.length; i++) {
+            if ((accepting[i]) && (targetThreads[i]))
+                accepting[i] = sinks[i].submit(path);
+            result |= accepting[i];
+        }
+
+        return result;
+    }
+
+    /**
+     * Paths of selected files
+     */
+    String[] getSelectedPaths() {
+        return selectedPaths;
+    }
+
+    /**
+     * Does selection contain a directory ?
+     */
+    boolean isDirSelected() {
+        return dirSelected;
+    }
+
+    /**
+     * Number of directories not walked for a thread since they are not mapped
+     * or excluded
+     */
+    int getSkippedDirsCount(SynchronizerThread thread) {
+        for (int i = 0; i < threads.length; i++) {
+            if (threads[i] == thread)
+                return skippedDirsCounts[i];
+        }
+
+        return 0;
+    }
+
+    private void runReadAction(Runnable runnable) {
+        ApplicationManager.getApplication().runReadAction(runnable);
+    }
+
+    private void addRoots(VirtualFile[] files) {
+        selectedPaths = new String[files.length];
+        List<VirtualFile> roots = new ArrayList<VirtualFile>();
+        for (int i = 0; i < files.length; i++) {
+            selectedPaths[i] = files[i].getPath();
+            dirSelected |= files[i].isDirectory();
+
+            if (!isContainedInOtherRoot(files, i)) {
+                roots.add(files[i]);
+                if (files[i].isDirectory())
+                    selectedDirPaths.add(files[i].getPath());
+            }
+        }
+
+        addFiles(roots.toArray(new VirtualFile[roots.size()]), null);
+    }
+
+    /**
+     * Is this selected file contained in another one, or selected twice ?
+     */
+    private static boolean isContainedInOtherRoot(VirtualFile[] files, int index) {
+        for (int i = 0; i < files.length; i++) {
+            if ((i != index) && (PathsUtils.isAncestor(files[i], files[index]))
+                  && ((i < index) || (!files[i].equals(files[index]))))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns how this directory should be walked for each thread whose
+     * parent directory is walked : its files are copied if the target may map
+     * them, class files of its sources are looked up anyway. Directories
+     * excluded by the IDE are walked if selected, and selected directories are
+     * always walked
+     *
+     * @param parentThreads threads for which the parent directory is walked
+     * @return null if this directory is not walked
+     */
+    private PendingDir getPendingDir(VirtualFile dir, boolean[] parentThreads, boolean selected) {
+        String path = dir.getPath();
+        String classesDirPath = pathManager.getClassesDirPath(dir);
+        boolean[] copying = new boolean[threads.length];
+        boolean[] walking = new boolean[threads.length];
+        boolean walked = false;
+        for (int i = 0; i < threads.length; i++) {
+            if ((!accepting[i]) || (!parentThreads[i]))
+                continue;
+
+            TargetMappings targetMappings = threads[i].getTargetMappings();
+            boolean excluded = pathManager.excludesChildrenFromCopy(targetMappings, path);
+            boolean copies = (!excluded)
+                  && ((selected) || (pathManager.mayMapChildren(targetMappings, path, classesDirPath)));
+            // Class files are not excluded along with their sources
+            boolean looksUp = (excluded) && (classesDirPath != null)
+                  && (pathManager.mayMapChildren(targetMappings, classesDirPath));
+            if ((selected) || (((copies) || (looksUp))
+                  && (!pathManager.isIgnoredDir(targetMappings, dir)))) {
+                copying[i] = copies;
+                walking[i] = true;
+                walked = true;
+            } else
+                skippedDirsCounts[i]++;
+        }
+
+        return (walked) ? new PendingDir(dir, copying, walking) : null;
+    }
+
+    /**
+     * Adds files paths, keeps directories to walk and java sources for later
+     *
+     * @param parent directory containing these files, null for selection
+     *               roots
+     */
+    private void addFiles(VirtualFile[] files, PendingDir parent) {
+        boolean selected = (parent == null);
+        if (selected) {
+            walkedThreads = new boolean[threads.length];
+            Arrays.fill(walkedThreads, true);
+            filesThreads = walkedThreads;
+        } else {
+            walkedThreads = parent.walkedThreads;
+            filesThreads = parent.copiedThreads;
+        }
+
+        // Directories are pushed in reverse order, so they are listed in order
+        for (int i = files.length - 1; i >= 0; i--) {
+            if (files[i].isDirectory()) {
+                PendingDir pendingDir = getPendingDir(files[i], walkedThreads, selected);
+                if (pendingDir != null)
+                    pendingDirs.addLast(pendingDir);
+            }
+        }
+
+        for (VirtualFile f : files) {
+            if ((f.isDirectory()) || (!f.isValid()))
+                continue;
+
+            paths.add(f.getPath());
+
+            if (pathManager.isJavaSource(f)) {
+                String outputPath = pathManager.getOutputPath(f);
+                if (outputPath != null)
+                    javaSources.add(new JavaSource(outputPath, pathManager.getPackagePath(f), f.getName()));
+            }
+        }
+    }
+
+    /**
+     * Submits paths found by the last read action, and class files paths of
+     * java sources, out of the read action since sinks may be full. Class
+     * files are only submitted to threads whose target may map them
+     *
+     * @return false if no thread accepts paths anymore
+     */
+    private boolean submitPaths() {
+        try {
+            for (String path : paths) {
+                if (!submit(path, filesThreads))
+                    return false;
+            }
+
+            for (JavaSource source : javaSources) {
+                String dirPath = (source.packagePath.length() == 0)
+                      ? source.outputPath
+                      : source.outputPath + '/' + source.packagePath;
+                // This directory will be walked
+                if (selectedDirs.contains(dirPath))
+                    continue;
+
+                boolean[] classThreads = getClassThreads(dirPath);
+                if (classThreads == null)
+                    continue;
+
+                for (String path : pathManager.getClassFilePaths(source.outputPath,
+                      source.packagePath, source.name)) {
+                    if (!submit(path, classThreads))
+                        return false;
+                }
+            }
+
+            return true;
+        } finally {
+            paths.clear();
+            javaSources.clear();
+        }
+    }
+
+    /**
+     * Returns the threads, among those walking the current directory, whose
+     * target may map class files of this output directory
+     *
+     * @return null if there is none
+     */
+    private boolean[] getClassThreads(String classesDirPath) {
+        boolean[] result = new boolean[threads.length];
+        boolean found = false;
+        for (int i = 0; i < threads.length; i++) {
+            result[i] = (walkedThreads[i])
+                  && (pathManager.mayMapChildren(threads[i].getTargetMappings(), classesDirPath));
+            found |= result[i];
+        }
+
+        return (found) ? result : null;
+    }
+
+    /**
+     * Directory to walk
+     */
+    private static final class PendingDir {
+        private final VirtualFile dir;
+        // Threads receiving files of this directory, others only get class
+        // files of its sources
+        private final boolean[] copiedThreads;
+        // Threads for which this directory is walked
+        private final boolean[] walkedThreads;
+
+        private PendingDir(VirtualFile dir, boolean[] copiedThreads, boolean[] walkedThreads) {
+            this.dir = dir;
+            this.copiedThreads = copiedThreads;
+            this.walkedThreads = walkedThreads;
+        }
+    }
+
+    /**
+     * Location of a java source, relative to its output directory
+     */
+    private static final class JavaSource {
+        private final String outputPath;
+        private final String packagePath;
+        private final String name;
+
+        private JavaSource(String outputPath, String packagePath, String name) {
+            this.outputPath = outputPath;
+            this.packagePath = packagePath;
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+import org.sylfra.idea.plugins.remotesynchronizer.utils.FileAttributes;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Contents of source files, shared by threads copying the same files to
+ * different targets, so that each source file is read once.
+ * <p/>
+ * A content is dropped once every reader has got it. Since a target may not
+ * copy a file, contents are also dropped in reading order when the cache
+ * exceeds its capacity. Large files are never cached.
+ * <p/>
+ * A content is only returned for the size and date it was read with,
+ * otherwise the caller reads the file itself.
+ * <p/>
+ * Entries and size are updated under the cache lock, files are read out of
+ * it : a content read after its entry has been dropped is only returned to
+ * the readers waiting for it, and is never counted.
+ */
+class SourceCache {
+    static final int MAX_FILE_SIZE = 1024 * 1024;
+
+    private final int readersCount;
+    private final long capacity;
+    // In reading order. Guarded by this
+    private final Map<String, Entry> entries;
+    // Size of counted contents. Guarded by this
+    private long size;
+
+    /**
+     * @param readersCount number of threads reading each file
+     * @param capacity     maximum size of cached contents, in bytes
+     */
+    SourceCache(int readersCount, long capacity) {
+        this.readersCount = readersCount;
+        this.capacity = capacity;
+        entries = new LinkedHashMap<String, Entry>();
+    }
+
+    /**
+     * Returns the content of a source file, read by the first reader asking
+     * for it. Each reader is expected to ask at most once per file
+     *
+     * @param attributes attributes of the file, as read by the caller
+     * @return null if the file is not cached, or has changed since it was read
+     */
+    byte[] get(File srcFile, FileAttributes attributes) {
+        if ((readersCount < 2) || (attributes.getSize() > MAX_FILE_SIZE))
+            return null;
+
+        String path = srcFile.getPath();
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(path);
+            if (entry == null) {
+                entry = new Entry(attributes);
+                entries.put(path, entry);
+            }
+        }
+
+        byte[] result = entry.getContent(srcFile);
+        synchronized (this) {
+            if ((result != null) && (entry.countedLength == 0) && (entries.get(path) == entry)) {
+                entry.countedLength = result.length;
+                size += result.length;
+            }
+            if (--entry.pendingReaders == 0)
+                remove(path, entry);
+            evict();
+        }
+
+        return ((result != null) && (entry.isSameFile(attributes))) ? result : null;
+    }
+
+    /**
+     * Size of cached contents, in bytes
+     */
+    synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Number of cached contents, being read or not
+     */
+    synchronized int getEntriesCount() {
+        return entries.size();
+    }
+
+    /**
+     * Called under the cache lock
+     */
+    private void remove(String path, Entry entry) {
+        if (entries.get(path) == entry) {
+            entries.remove(path);
+            size -= entry.countedLength;
+        }
+    }
+
+    /**
+     * Drops the oldest contents until the cache fits its capacity. Called
+     * under the cache lock
+     */
+    private void evict() {
+        Iterator<Entry> itEntries = entries.values().iterator();
+        while ((size > capacity) && (itEntries.hasNext())) {
+            Entry entry = itEntries.next();
+            itEntries.remove();
+            size -= entry.countedLength;
+        }
+    }
+
+    /**
+     * Content of a file, read on first use
+     */
+    private final class Entry {
+        private final long lastModified;
+        private final long fileSize;
+        // Guarded by the cache
+        private int pendingReaders;
+        private long countedLength;
+        // Guarded by the entry
+        private boolean loaded;
+        private byte[] content;
+
+        private Entry(FileAttributes attributes) {
+            lastModified = attributes.getLastModified();
+            fileSize = attributes.getSize();
+            pendingReaders = readersCount;
+        }
+
+        private synchronized byte[] getContent(File srcFile) {
+            if (!loaded) {
+                loaded = true;
+                content = read(srcFile, (int) fileSize);
+            }
+
+            return content;
+        }
+
+        private boolean isSameFile(FileAttributes attributes) {
+            return (attributes.getLastModified() == lastModified)
+                  && (attributes.getSize() == fileSize);
+        }
+    }
+
+    /**
+     * Reads a whole file
+     *
+     * @return null if the file can't be read, or its size is not the expected
+     *         one
+     */
+    private static byte[] read(File f, int length) {
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(f);
+            byte[] result = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int count = in.read(result, offset, length - offset);
+                if (count == -1)
+                    return null;
+                offset += count;
+            }
+
+            // File has grown since its attributes were read
+            return (in.read() == -1) ? result : null;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignored
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+import org.sylfra.idea.plugins.remotesynchronizer.utils.ContentDigest;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.FileAttributes;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.FileMover;
+
+import java.io.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers files copied for a target : for each source path, the destination
+ * path, and the size, date and content hash of the source when it was copied.
+ * <p/>
+ * A source file whose size and date did not change since last copy, or whose
+ * content hash did not change, doesn't need to be copied again. This decision
+ * is taken without any access to the destination.
+ * <p/>
+ * For large files, the hash of each block may also be remembered : as long as
+ * the destination keeps the size and date given by its last copy, its blocks
+ * are known without reading it, and only changed blocks need to be written.
+ * <p/>
+ * Hashes are those of the bytes written to the destination, computed while
+ * writing them. A file copied by concurrent chunks only has block hashes.
+ * <p/>
+ * Manifest is stored as a tab separated text file, one line per source path.
+ * It is written to a temporary file which then replaces it, so a failed save
+ * never leaves a truncated manifest.
+ */
+public class SynchroManifest {
+    private static final String ENCODING = "UTF-8";
+    private static final char SEPARATOR = '\t';
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    // Size of the blocks hashed separately
+    static final int BLOCK_SIZE = ContentDigest.BLOCK_SIZE;
+
+    private final File file;
+    private final Map<String, Entry> entries;
+    private volatile boolean modified;
+
+    public SynchroManifest(File file) {
+        this.file = file;
+        entries = new ConcurrentHashMap<String, Entry>();
+    }
+
+    /**
+     * Is the source file unchanged since it was copied to this destination ?
+     * If only its date has changed, the manifest is updated with the new date.
+     */
+    public boolean isUnchanged(String srcPath, String destPath, File srcFile) {
+        return isUnchanged(srcPath, destPath, srcFile, FileAttributes.read(srcFile));
+    }
+
+    /**
+     * Same as {@link #isUnchanged(String, String, File)}, using attributes
+     * already read from the source file
+     */
+    public boolean isUnchanged(String srcPath, String destPath, File srcFile,
+                               FileAttributes srcAttributes) {
+        Entry entry = entries.get(srcPath);
+        if ((entry == null) || (!entry.destPath.equals(destPath)))
+            return false;
+
+        long lastModified = srcAttributes.getLastModified();
+        if ((lastModified == 0) || (srcAttributes.getSize() != entry.size))
+            return false;
+
+        if (lastModified == entry.lastModified)
+            return true;
+
+        // Date has changed, maybe the file has just been rebuilt
+        boolean chunked = (entry.hash.length() == 0);
+        ContentDigest digest = computeDigest(srcFile, chunked);
+        if ((digest == null) || (!(chunked
+              ? entry.blockHashes.equals(digest.getBlockHashes())
+              : entry.hash.equals(digest.getHash()))))
+            return false;
+
+        // Destination keeps its former date, its blocks can't be checked anymore
+        entries.put(srcPath, new Entry(destPath, entry.size, lastModified, digest.getHash(), ""));
+        modified = true;
+        return true;
+    }
+
+    /**
+     * Returns the hashes of the blocks of the source when it was last copied to
+     * this destination, provided that destination still has the size and date
+     * given by this copy
+     *
+     * @return concatenated hashes, null if unknown or if destination has
+     *         changed
+     */
+    public String getBlockHashes(String srcPath, String destPath, FileAttributes destAttributes) {
+        Entry entry = entries.get(srcPath);
+        if ((entry == null) || (entry.blockHashes.length() == 0)
+              || (!entry.destPath.equals(destPath))
+              || (destAttributes.getSize() != entry.size)
+              || (destAttributes.getLastModified() != entry.lastModified))
+            return null;
+
+        return entry.blockHashes;
+    }
+
+    /**
+     * Source file has been copied to destination, which shares its content,
+     * e.g. through a link : source is hashed now
+     */
+    public void recordCopy(String srcPath, String destPath, File srcFile) {
+        recordCopy(srcPath, destPath, srcFile, false);
+    }
+
+    /**
+     * Same as {@link #recordCopy(String, String, File)}, remembering the hash
+     * of each block if <code>hashBlocks</code> is true
+     */
+    public void recordCopy(String srcPath, String destPath, File srcFile, boolean hashBlocks) {
+        // Read date before hash so a concurrent change will be seen next time
+        long lastModified = srcFile.lastModified();
+        ContentDigest digest = computeDigest(srcFile, hashBlocks);
+        if (digest == null)
+            remove(srcPath);
+        else
+            recordCopy(srcPath, destPath, lastModified, digest);
+    }
+
+    /**
+     * Source file has been written to destination
+     *
+     * @param lastModified modification date given to destination
+     * @param digest       hashes of the bytes written, computed while writing
+     *                     them
+     */
+    public void recordCopy(String srcPath, String destPath, long lastModified,
+                           ContentDigest digest) {
+        String hash = digest.getHash();
+        String blockHashes = digest.getBlockHashes();
+        if ((hash == null) && (blockHashes.length() == 0))
+            remove(srcPath);
+        else {
+            entries.put(srcPath, new Entry(destPath, digest.getLength(), lastModified,
+                  (hash == null) ? "" : hash, blockHashes));
+            modified = true;
+        }
+    }
+
+    /**
+     * Destination of this source path has been deleted, or its state is unknown
+     */
+    public void remove(String srcPath) {
+        if ((srcPath != null) && (entries.remove(srcPath) != null))
+            modified = true;
+    }
+
+    public void load() throws IOException {
+        entries.clear();
+        modified = false;
+        if (!file.exists())
+            return;
+
+        BufferedReader reader = new BufferedReader(
+              new InputStreamReader(new FileInputStream(file), ENCODING));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(String.valueOf(SEPARATOR));
+                // Block hashes are missing for small files
+                if ((fields.length != 5) && (fields.length != 6))
+                    continue;
+
+                try {
+                    entries.put(fields[0], new Entry(fields[1], Long.parseLong(fields[2]),
+                          Long.parseLong(fields[3]), fields[4],
+                          (fields.length == 6) ? fields[5] : ""));
+                } catch (NumberFormatException e) {
+                    // Corrupted line, file will be copied again
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    public synchronized void save() throws IOException {
+        if (!modified)
+            return;
+
+        File dir = file.getParentFile();
+        if ((!dir.isDirectory()) && (!dir.mkdirs()))
+            throw new IOException("Can't create directory " + dir);
+
+        // Changes made while saving will be saved next time
+        modified = false;
+        File tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+        boolean saved = false;
+        try {
+            write(tempFile);
+            FileMover.replace(tempFile, file);
+            saved = true;
+        } finally {
+            if (!saved) {
+                modified = true;
+                tempFile.delete();
+            }
+        }
+    }
+
+    private void write(File f) throws IOException {
+        Writer writer = new BufferedWriter(
+              new OutputStreamWriter(new FileOutputStream(f), ENCODING));
+        try {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                writer.write(e.getKey());
+                writer.write(SEPARATOR);
+                writer.write(entry.destPath);
+                writer.write(SEPARATOR);
+                writer.write(String.valueOf(entry.size));
+                writer.write(SEPARATOR);
+                writer.write(String.valueOf(entry.lastModified));
+                writer.write(SEPARATOR);
+                writer.write(entry.hash);
+                if (entry.blockHashes.length() > 0) {
+                    writer.write(SEPARATOR);
+                    writer.write(entry.blockHashes);
+                }
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Returns MD5 hash of file content, or null if file can't be read
+     */
+    static String computeHash(File f) {
+        return computeHash(f, null);
+    }
+
+    /**
+     * Same as {@link #computeHash(File)}, appending the hash of each block of
+     * {@link #BLOCK_SIZE} bytes to <code>blockHashes</code> if not null. The
+     * last block may be shorter
+     */
+    static String computeHash(File f, StringBuilder blockHashes) {
+        ContentDigest digest = computeDigest(f, blockHashes != null);
+        if (digest == null)
+            return null;
+
+        if (blockHashes != null)
+            blockHashes.append(digest.getBlockHashes());
+        return digest.getHash();
+    }
+
+    /**
+     * Hashes file content, or returns null if file can't be read
+     */
+    private static ContentDigest computeDigest(File f, boolean hashBlocks) {
+        try {
+            ContentDigest digest = new ContentDigest(hashBlocks);
+            InputStream in = new FileInputStream(f);
+            try {
+                byte[] buffer = new byte[HASH_BUFFER_SIZE];
+                int count;
+                while ((count = in.read(buffer)) != -1)
+                    digest.update(buffer, 0, count);
+            } finally {
+                in.close();
+            }
+
+            digest.finish();
+            return digest;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static final class Entry {
+        private final String destPath;
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+        // Empty if blocks were not hashed
+        private final String blockHashes;
+
+        private Entry(String destPath, long size, long lastModified, String hash,
+                      String blockHashes) {
+            this.destPath = destPath;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.blockHashes = blockHashes;
+        }
+    }
+}
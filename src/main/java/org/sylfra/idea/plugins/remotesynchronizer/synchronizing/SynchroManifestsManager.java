@@ -0,0 +1,90 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import org.sylfra.idea.plugins.remotesynchronizer.RemoteSynchronizerPlugin;
+import org.sylfra.idea.plugins.remotesynchronizer.model.Config;
+import org.sylfra.idea.plugins.remotesynchronizer.model.ConfigListener;
+import org.sylfra.idea.plugins.remotesynchronizer.model.TargetMappings;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Provides the {@link SynchroManifest} of each target.
+ * <p/>
+ * Manifests are stored in the <code>.idea</code> directory of the project, or
+ * in IDEA system directory when project is not directory based. They are
+ * loaded on first use and saved after each synchronization.
+ * <p/>
+ * File name of a manifest is made of the name and of the unique id of its
+ * target, so that targets with the same name never share a manifest.
+ */
+public class SynchroManifestsManager implements ConfigListener {
+    private static final String IDEA_DIR = ".idea";
+    private static final String MANIFESTS_DIR = "remotesynchronizer";
+    private static final String MANIFEST_EXTENSION = ".manifest";
+    private static final Logger LOGGER = Logger.getInstance("RemoteSynchronizer");
+
+    private RemoteSynchronizerPlugin plugin;
+    private final Map<TargetMappings, SynchroManifest> manifests;
+
+    public SynchroManifestsManager(RemoteSynchronizerPlugin plugin) {
+        this.plugin = plugin;
+        manifests = new HashMap<TargetMappings, SynchroManifest>();
+        plugin.getConfig().addConfigListener(this);
+    }
+
+    public synchronized SynchroManifest getManifest(TargetMappings target) {
+        SynchroManifest result = manifests.get(target);
+        if (result == null) {
+            result = new SynchroManifest(getManifestFile(target));
+            try {
+                result.load();
+            } catch (IOException e) {
+                // Unreadable manifest : all files will be checked again
+                LOGGER.warn("Can't load synchronization manifest of target " + target.getName(), e);
+            }
+            manifests.put(target, result);
+        }
+
+        return result;
+    }
+
+    public void saveManifest(SynchroManifest manifest) {
+        try {
+            manifest.save();
+        } catch (IOException e) {
+            LOGGER.warn("Can't save synchronization manifest", e);
+        }
+    }
+
+    private File getManifestFile(TargetMappings target) {
+        String fileName = String.valueOf(target.getName()).replaceAll("[^\\w.-]", "_")
+              + "-" + target.getId() + MANIFEST_EXTENSION;
+
+        return new File(getManifestsDir(), fileName);
+    }
+
+    private File getManifestsDir() {
+        Project project = plugin.getProject();
+        File ideaDir = new File(project.getBaseDir().getPath(), IDEA_DIR);
+        if (ideaDir.isDirectory())
+            return new File(ideaDir, MANIFESTS_DIR);
+
+        return new File(new File(PathManager.getSystemPath(), MANIFESTS_DIR),
+              project.getLocationHash());
+    }
+
+    /**
+     * Mappings may have changed, manifests are reloaded on next use
+     */
+    public synchronized void configChanged(Config config) {
+        for (SynchroManifest manifest : manifests.values())
+            saveManifest(manifest);
+        manifests.clear();
+    }
+}
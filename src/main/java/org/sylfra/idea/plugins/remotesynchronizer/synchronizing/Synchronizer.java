@@ -2,37 +2,149 @@ package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
 
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectUtil;
-import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.RefreshQueue;
 import org.sylfra.idea.plugins.remotesynchronizer.RemoteSynchronizerPlugin;
+import org.sylfra.idea.plugins.remotesynchronizer.listener.ChangedFilesTracker;
+import org.sylfra.idea.plugins.remotesynchronizer.model.TargetMappings;
 import org.sylfra.idea.plugins.remotesynchronizer.utils.ConfigPathsManager;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.PathsUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Thomas Demande
  */
 public class Synchronizer {
 
-    public static void performSynchronization(RemoteSynchronizerPlugin plugin, VirtualFile[] files, boolean fromCompilationListener) {
+    public static void performSynchronization(final RemoteSynchronizerPlugin plugin, final VirtualFile[] files,
+                                              final boolean fromCompilationListener) {
         if (files == null)
             return;
 
-        // Checks configuration allows concurent runs when a synchro is running
-        if ((!plugin.getConfig().getGeneralOptions().isAllowConcurrentRuns())
-              && (plugin.getCopierThreadManager().hasRunningSynchro())) {
-            plugin.getConsolePane().doPopup();
+        if (!checkConcurrentRuns(plugin))
+            return;
+
+        if (plugin.getConfig().getGeneralOptions().isSaveBeforeCopy())
+            FileDocumentManager.getInstance().saveAllDocuments();
+
+        refreshOutputRoots(plugin, files, new Runnable() {
+            public void run() {
+                SynchronizerThreadManager manager = plugin.getCopierThreadManager();
+                manager.launchSynchronization(files, fromCompilationListener);
+            }
+        });
+    }
+
+    /**
+     * Synchronizes the output of a compilation, for each target synchronized on
+     * compilation : the output directories of the compiled modules, so that
+     * remote copies of deleted class files are removed, and the files
+     * generated out of them, the same for every target. Targets with no
+     * mapping covering them are not synchronized.
+     * <p/>
+     * When incremental synchronization is enabled, only files changed since
+     * previous synchronization are synchronized, unless these changes are
+     * unknown : the output of the compilation is then synchronized. Output
+     * directories and changed paths of all targets are refreshed at once,
+     * asynchronously
+     *
+     * @param generatedPaths model paths of the files generated by the compiler
+     * @param modules        compiled modules
+     */
+    public static void performCompileSynchronization(final RemoteSynchronizerPlugin plugin,
+                                                     Collection<String> generatedPaths,
+                                                     Module[] modules) {
+        if (!checkConcurrentRuns(plugin))
             return;
-        }
 
+        // Saved documents are recorded as changed files
         if (plugin.getConfig().getGeneralOptions().isSaveBeforeCopy())
             FileDocumentManager.getInstance().saveAllDocuments();
 
-        if (!plugin.getCopierThreadManager().hasRunningSynchro())
-            refreshVfsIfJavaSelected(files, plugin.getPathManager());
+        boolean incremental = plugin.getConfig().getGeneralOptions().isIncrementalSyncOnCompile();
+        final ChangedFilesTracker tracker = plugin.getChangedFilesTracker();
+        List<String> outputRootPaths = new ArrayList<String>();
+        for (VirtualFile outputRoot : plugin.getPathManager().getOutputRoots(modules))
+            outputRootPaths.add(outputRoot.getPath());
+        final Set<String> outputPaths = CompileSelection.getPaths(outputRootPaths, generatedPaths);
+
+        // Changed paths of each target, null when they are the compilation
+        // output
+        final Map<TargetMappings, Set<String>> targetsPaths = new LinkedHashMap<TargetMappings, Set<String>>();
+        Set<String> allPaths = new HashSet<String>(outputPaths);
+        for (TargetMappings targetMappings : plugin.getConfig().getTargetMappings()) {
+            if ((targetMappings.isActive()) && (targetMappings.isExecuteOnCompile())) {
+                Set<String> paths = (incremental) ? tracker.drainChangedPaths(targetMappings) : null;
+                if (paths == null) {
+                    if ((isMapped(plugin, targetMappings, generatedPaths))
+                          || (mayMapChildren(plugin, targetMappings, outputRootPaths)))
+                        targetsPaths.put(targetMappings, null);
+                } else if (!paths.isEmpty()) {
+                    targetsPaths.put(targetMappings, paths);
+                    allPaths.addAll(paths);
+                }
+            }
+        }
+
+        if (targetsPaths.isEmpty())
+            return;
 
-        SynchronizerThreadManager manager = plugin.getCopierThreadManager();
-        manager.launchSynchronization(files, fromCompilationListener);
+        tracker.refreshChangedPaths(allPaths, new Runnable() {
+            public void run() {
+                // Targets given the same files may share their reads
+                VirtualFile[] outputFiles = tracker.findChangedFiles(outputPaths);
+                SynchronizerThreadManager manager = plugin.getCopierThreadManager();
+                for (Map.Entry<TargetMappings, Set<String>> entry : targetsPaths.entrySet()) {
+                    if (entry.getValue() == null) {
+                        if (outputFiles.length > 0)
+                            manager.launchSynchronization(entry.getKey(), outputFiles);
+                    } else {
+                        VirtualFile[] files = tracker.findChangedFiles(entry.getValue());
+                        if (files.length > 0)
+                            manager.launchSynchronization(entry.getKey(), files, entry.getValue());
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Is one of these paths covered by a mapping of the target ?
+     */
+    private static boolean isMapped(RemoteSynchronizerPlugin plugin, TargetMappings target,
+                                    Collection<String> paths) {
+        ConfigPathsManager pathManager = plugin.getPathManager();
+        for (String path : paths) {
+            if (pathManager.isMapped(target, path))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * May a file contained in one of these directories be covered by a
+     * mapping of the target ?
+     */
+    private static boolean mayMapChildren(RemoteSynchronizerPlugin plugin, TargetMappings target,
+                                          Collection<String> dirPaths) {
+        ConfigPathsManager pathManager = plugin.getPathManager();
+        for (String dirPath : dirPaths) {
+            if (pathManager.mayMapChildren(target, dirPath))
+                return true;
+        }
+
+        return false;
     }
 
     public static void performSynchronization(RemoteSynchronizerPlugin plugin, VirtualFile[] files) {
@@ -44,16 +156,49 @@ public class Synchronizer {
         performSynchronization(RemoteSynchronizerPlugin.getInstance(project), virtualFiles);
     }
 
-    private static void refreshVfsIfJavaSelected(final VirtualFile[] files,
-                                          final ConfigPathsManager pathManager) {
-        ApplicationManager.getApplication().runWriteAction(new Runnable() {
+    /**
+     * Checks configuration allows concurent runs when a synchro is running
+     */
+    private static boolean checkConcurrentRuns(RemoteSynchronizerPlugin plugin) {
+        if ((!plugin.getConfig().getGeneralOptions().isAllowConcurrentRuns())
+              && (plugin.getCopierThreadManager().hasRunningSynchro())) {
+            plugin.getConsolePane().doPopup();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Refreshes compiler output directories walked by the synchronization of
+     * these files, asynchronously, and then runs <code>then</code> in the UI
+     * thread.
+     * <p/>
+     * Only output directories overlapping selection need to be refreshed :
+     * class files of selected sources are looked up with java.io
+     */
+    private static void refreshOutputRoots(RemoteSynchronizerPlugin plugin, VirtualFile[] files,
+                                           final Runnable then) {
+        List<VirtualFile> roots = new ArrayList<VirtualFile>();
+        for (VirtualFile outputRoot : plugin.getPathManager().getOutputRoots()) {
+            for (VirtualFile file : files) {
+                if ((PathsUtils.isAncestor(file, outputRoot)) || (PathsUtils.isAncestor(outputRoot, file))) {
+                    roots.add(outputRoot);
+                    break;
+                }
+            }
+        }
+
+        if (roots.isEmpty()) {
+            then.run();
+            return;
+        }
+
+        RefreshQueue.getInstance().refresh(true, true, new Runnable() {
             public void run() {
-                for (VirtualFile file : files)
-                    if (pathManager.isJavaSource(file)) {
-                        LocalFileSystem.getInstance().refresh(false);
-                        return;
-                    }
+                // Refresh ends within a write action, synchronization is launched after it
+                ApplicationManager.getApplication().invokeLater(then);
             }
-        });
+        }, roots.toArray(new VirtualFile[roots.size()]));
     }
 }
@@ -1,6 +1,5 @@
 package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
 
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.ToolWindowManager;
 import com.intellij.util.ui.UIUtil;
@@ -10,14 +9,24 @@ import org.sylfra.idea.plugins.remotesynchronizer.model.SyncronizingStatsInfo;
 import org.sylfra.idea.plugins.remotesynchronizer.model.TargetMappings;
 import org.sylfra.idea.plugins.remotesynchronizer.ui.ThreadConsole;
 import org.sylfra.idea.plugins.remotesynchronizer.utils.ConfigPathsManager;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.ContentDigest;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.FileAttributes;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.FileCopier;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.FileLinker;
 import org.sylfra.idea.plugins.remotesynchronizer.utils.LabelsFactory;
 import org.sylfra.idea.plugins.remotesynchronizer.utils.PathsUtils;
-import org.sylfra.idea.plugins.remotesynchronizer.utils.Utils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Manage a synchronizing in background.
@@ -25,11 +34,23 @@ import java.util.Stack;
  * Method {@link #start(com.intellij.openapi.vfs.VirtualFile[])}
  * must be invoked to start synchronizing of given files/dirs.
  * <p/>
- * Virtual files are filtered to drop doublons and converted to absolute paths.
- * Then the remote dirs are inspected in order to delete obsolete files.
- * Finally, added and modified filkes are copied.
+ * Virtual files are filtered to drop doublons and converted to absolute paths,
+ * which are streamed to a pipeline copying added and modified files, using a
+ * pool of workers sized from general options. Then the remote dirs are
+ * inspected in order to delete obsolete files. A remote file standing where a
+ * directory is now copied, or a remote directory standing where a file is now
+ * copied, is deleted before the copy instead.
  * <p/>
- * This thread may be interrupted, resumed or stopped
+ * Threads started together for the same files may form a {@link FanOutGroup},
+ * sharing the selection walk and source reads.
+ * <p/>
+ * Changed paths a run synchronizes are given back to the changed files tracker
+ * when it fails or is stopped.
+ * <p/>
+ * This thread may be interrupted, resumed or stopped. A stopped run ends once
+ * its workers have finished : the thread is available again only then. A
+ * resumed run synchronizes its whole selection again, with stats of its own :
+ * files copied before the interruption are then counted as identical.
  *
  * @author <a href="mailto=sylfradev@yahoo.fr">Sylvain FRANCOIS</a>
  */
@@ -45,22 +66,46 @@ public class SynchronizerThread {
     public static final int TYPE_COPY_EXCLUDED = 4;
     public static final int TYPE_COPY_DELETED = 5;
 
+    // Delay between two progress notifications while looking for obsolete files
+    private static final long SCAN_PROGRESS_DELAY = 2000;
+
     private RemoteSynchronizerPlugin plugin;
     private TargetMappings targetMappings;
     private ThreadConsole console;
     private VirtualFile[] selectedFiles;
-    private Stack<String> filesToCopy;
-    private Stack<File> filesToDelete;
-    private int state;
-    private SyncronizingStatsInfo statsInfo;
+    private PathWorkList<File> filesToDelete;
+    // Remote directories known to exist during current synchronization
+    private final ConcurrentMap<File, Boolean> existingDestDirs;
+    // Remote directories where files could not be linked during current
+    // synchronization, e.g. because they are on another file system
+    private final ConcurrentMap<File, Boolean> unlinkableDestDirs;
+    private volatile int state;
+    // Is a run in progress, possibly ending after an interruption or a stop ?
+    // Guarded by this
+    private boolean running;
+    // Has current run been interrupted, so that it must not be seen as complete
+    private volatile boolean runInterrupted;
+    // Stats of the current run, replaced when it is run again
+    private volatile SyncronizingStatsInfo statsInfo;
     private SynchronizerThreadListener listener;
+    private SynchroManifest manifest;
+    // Group of the next run, if started with other threads
+    private volatile FanOutGroup group;
+    // Source contents shared by the group of the current run, if any
+    private volatile SourceCache sourceCache;
+    // Copies chunks of large files during current synchronization, created
+    // on the first chunked copy. Guarded by this
+    private ExecutorService chunkExecutor;
+    // Paths drained from the changed files tracker for current run, if any
+    private Collection<String> changedPaths;
 
     public SynchronizerThread(RemoteSynchronizerPlugin plugin,
                               TargetMappings targetMappings) {
         this.plugin = plugin;
         this.targetMappings = targetMappings;
-        filesToCopy = new Stack<String>();
-        filesToDelete = new Stack<File>();
+        filesToDelete = new PathWorkList<File>();
+        existingDestDirs = new ConcurrentHashMap<File, Boolean>();
+        unlinkableDestDirs = new ConcurrentHashMap<File, Boolean>();
         state = STATE_STOPPED;
     }
 
@@ -85,10 +130,30 @@ public class SynchronizerThread {
     }
 
     public void start(VirtualFile[] files) {
+        start(files, null, null);
+    }
+
+    /**
+     * Starts synchronizing, as a member of a group if not null, which must be
+     * started with the same files for each of its threads
+     *
+     * @param changedPaths paths drained from the changed files tracker for
+     *                     these files, may be null
+     */
+    void start(VirtualFile[] files, FanOutGroup group, Collection<String> changedPaths) {
         selectedFiles = files;
+        this.group = group;
+        this.changedPaths = ((changedPaths == null) || (changedPaths.isEmpty())) ? null : changedPaths;
 
-        state = STATE_ACTIVE;
+        synchronized (this) {
+            state = STATE_ACTIVE;
+            running = true;
+        }
+        runInterrupted = false;
         statsInfo = new SyncronizingStatsInfo();
+        manifest = (targetMappings.isUseManifest())
+              ? plugin.getManifestsManager().getManifest(targetMappings)
+              : null;
 
         Thread t = runThread();
         listener.threadStarted(this, t, files);
@@ -99,36 +164,50 @@ public class SynchronizerThread {
     }
 
     /**
-     * Stop current synchronizing and clear non copied files
+     * Stop current synchronizing and clear non copied files. A run in progress
+     * ends once its workers have finished
      */
     public void stop() {
-        state = STATE_STOPPED;
-        filesToCopy.clear();
+        boolean ended;
+        synchronized (this) {
+            state = STATE_STOPPED;
+            ended = !running;
+        }
         listener.threadStopped(this, statsInfo);
+        if (ended)
+            stopped();
     }
 
     /**
      * Interrupt synchronizing
      */
     public void interrupt() {
+        runInterrupted = true;
         state = STATE_INTERRUPTED;
         listener.threadInterrupted(this);
     }
 
     /**
-     * Resume synchronizing
+     * Resume synchronizing. If the interrupted run has not ended yet, it is
+     * run again once ended
      */
     public void resume() {
-        state = STATE_ACTIVE;
+        boolean relaunched;
+        synchronized (this) {
+            state = STATE_ACTIVE;
+            relaunched = !running;
+            running = true;
+        }
         listener.threadResumed(this);
-        runThread();
+        if (relaunched)
+            runAgain();
     }
 
     /**
-     * Is the thread stopped ?
+     * Is the thread stopped, with no run ending ?
      */
-    public boolean isAvailable() {
-        return (state == STATE_STOPPED);
+    public synchronized boolean isAvailable() {
+        return (state == STATE_STOPPED) && (!running);
     }
 
     /**
@@ -153,16 +232,13 @@ public class SynchronizerThread {
     }
 
     /**
-     * Starts thread
+     * Starts thread. No read action is held during synchronization, only
+     * while planning it
      */
     private Thread runThread() {
         Thread t = new Thread("RemoteSynchronizer") {
             public void run() {
-                ApplicationManager.getApplication().runReadAction(new Runnable() {
-                    public void run() {
-                        synchronize();
-                    }
-                });
+                synchronize();
             }
         };
 
@@ -172,151 +248,166 @@ public class SynchronizerThread {
     }
 
     /**
-     * Delete obsolete files/dir and then starts copies
+     * Runs a synchronization, then ends it once all its workers have finished
      */
     private void synchronize() {
-        filterFilesToCopy();
-        filterFilesToDelete();
-
-        while ((state == STATE_ACTIVE) && (!filesToDelete.empty()))
-            deleteFile(filesToDelete.pop(), statsInfo);
+        boolean completed = false;
+        try {
+            completed = synchronizeFiles();
+        } finally {
+            runEnded(completed);
+        }
+    }
 
-        while ((state == STATE_ACTIVE) && (!filesToCopy.empty()))
-            copyFile(filesToCopy.pop().toString(), statsInfo);
+    /**
+     * Ends a run, unless it is interrupted : either it has completed, or it
+     * has been stopped, or it has been resumed while ending and is run again
+     */
+    private void runEnded(boolean completed) {
+        boolean stopped = false;
+        boolean rerun = false;
+        synchronized (this) {
+            completed = (completed) && (state == STATE_ACTIVE) && (!runInterrupted);
+            if (completed)
+                state = STATE_STOPPED;
+            else if (state == STATE_ACTIVE)
+                rerun = true;
+            else
+                stopped = (state == STATE_STOPPED);
+            running = rerun;
+        }
 
-        if (state == STATE_ACTIVE)
+        if (completed)
             finished();
+        else if (stopped)
+            stopped();
+        else if (rerun)
+            runAgain();
     }
 
     /**
-     * Build stack of files to copy
+     * Runs the whole selection again after an interruption, counting stats
+     * from scratch : files already copied are not counted twice
      */
-    private void filterFilesToCopy() {
-        filesToCopy.clear();
-        addPathsToCopy(selectedFiles);
+    private void runAgain() {
+        runInterrupted = false;
+        statsInfo = new SyncronizingStatsInfo();
+        runThread();
     }
 
     /**
-     * Selected files are filtered to drop doublons and converted to absolute
-     * paths. Add files recursively.
+     * Copies files while the selection is walked, then deletes obsolete
+     * files/dirs. Obsolete files are deleted after copies, except those whose
+     * path is copied with another type
+     *
+     * @return false if the run has been interrupted or stopped
      */
-    private void addPathsToCopy(VirtualFile[] files) {
-        if (files == null)
-            return;
+    private boolean synchronizeFiles() {
+        // A resumed run walks its selection alone
+        FanOutGroup group = this.group;
+        this.group = null;
+        sourceCache = (group == null) ? null : group.getSourceCache();
+
+        existingDestDirs.clear();
+        unlinkableDestDirs.clear();
+        int workersCount = Math.max(1, plugin.getConfig().getGeneralOptions().getCopyWorkersCount());
+        CopyPipeline pipeline = new CopyPipeline(this, workersCount,
+              new WorkerThreadFactory(targetMappings.getName()));
+        pipeline.start();
+
+        SelectionPlanner planner;
+        boolean planned;
+        if (group == null) {
+            planner = new SelectionPlanner(this, pipeline);
+            planned = planner.plan(selectedFiles);
+        } else {
+            planned = group.plan(this, pipeline, selectedFiles);
+            planner = group.getPlanner();
+        }
+        int skippedDirsCount = planner.getSkippedDirsCount(this);
+        if ((planned) && (skippedDirsCount > 0))
+            listener.dirsSkipped(this, skippedDirsCount);
+        pipeline.finish();
+        shutdownChunkExecutor();
+        if (!planned)
+            return false;
 
-        ConfigPathsManager pathManager = plugin.getPathManager();
-        for (VirtualFile f : files) {
-            if (f.isDirectory()) {
-                addPathsToCopy(f.getChildren());
-            } else {
-                if (!filesToCopy.contains(f.getPath())) {
-                    filesToCopy.push(f.getPath());
-                }
+        filterFilesToDelete(planner);
 
-                if (pathManager.isJavaSource(f)) {
-                    List<String> classFilePaths = pathManager.getClassFilePaths(f);
-                    if (classFilePaths != null) {
-                        for (String path : classFilePaths) {
-                            if (!filesToCopy.contains(path)) {
-                                filesToCopy.push(path);
-                            }
-                        }
-                    }
-                }
-            }
-        }
+        // Children have been added after their parent, they are deleted first
+        File fileToDelete;
+        while ((state == STATE_ACTIVE) && ((fileToDelete = filesToDelete.removeLast()) != null))
+            deleteFile(fileToDelete, statsInfo);
+
+        return (state == STATE_ACTIVE);
     }
 
     /**
-     * Build stack of files to delete
-     * Inspects all files under destinations within included paths. Keep only
-     * files which are contained in files selection
+     * Build list of files to delete
+     * Inspects all files under destinations within included paths, in
+     * parallel. Keep only files which are contained in files selection
      */
-    private void filterFilesToDelete() {
+    private void filterFilesToDelete(SelectionPlanner planner) {
         filesToDelete.clear();
-        if (selectedFiles == null)
-            return;
 
         // If there is no directory selected, no need to look for files to delete
-        boolean dirSelected = false;
-        for (VirtualFile selectedFile : selectedFiles) {
-            if (selectedFile.isDirectory()) {
-                dirSelected = true;
-                break;
-            }
-        }
-        if (!dirSelected)
+        if (!planner.isDirSelected())
             return;
 
+        List<File> destDirs = new ArrayList<File>();
         SynchroMapping[] includedMappings = targetMappings.getSynchroMappings();
         for (SynchroMapping p : includedMappings) {
             if (p.isDeleteObsoleteFiles()) {
                 String destPath = plugin.getPathManager().expandPath(p.getDestPath(), false);
-                pushFilesToDelete(new File(destPath));
+                destDirs.add(new File(destPath));
             }
         }
-    }
-
-    /**
-     * Add recursively files to delete
-     */
-    private void pushFilesToDelete(File destFile) {
-        if (!destFile.exists())
+        if (destDirs.isEmpty())
             return;
 
-        String srcPath = plugin.getPathManager()
-              .getSrcPath(targetMappings, PathsUtils.toModelPath(destFile));
-
-        if (srcPath != null) {
-            File srcFile = new File(srcPath);
-
-            if (((!srcFile.exists())
-                  || (plugin.getPathManager().isExcludedFromCopy(targetMappings, srcPath)))
-                  && (isContainedInSelection(srcPath))
-                  && (!filesToDelete.contains(destFile))) {
-                filesToDelete.push(destFile);
-            }
-        }
-
-        if (destFile.isDirectory()) {
-            File[] children = destFile.listFiles();
-            if (children != null)
-                for (File aChildren : children) {
-                    pushFilesToDelete(aChildren);
-                }
-        }
-    }
-
-    /**
-     * Does this path belong to file selection ?
-     */
-    private boolean isContainedInSelection(String path) {
-        for (VirtualFile file : selectedFiles) {
-            if (plugin.getPathManager().isRelativePath(file.getPath(), path)) {
-                return true;
-            }
+        String[] selectedPaths = planner.getSelectedPaths();
+        ExecutorService executor = Executors.newFixedThreadPool(
+              Math.max(1, plugin.getConfig().getGeneralOptions().getCopyWorkersCount()),
+              new WorkerThreadFactory(targetMappings.getName()));
+        ObsoleteFilesScanner scanner = new ObsoleteFilesScanner(this, selectedPaths, executor);
+        try {
+            scanner.start(destDirs);
+            while (!scanner.awaitTermination(SCAN_PROGRESS_DELAY))
+                listener.obsoleteFilesScanning(this, scanner.getDirsCount(), scanner.getFilesCount());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            executor.shutdownNow();
         }
 
-        return false;
+        for (File f : scanner.getObsoleteFiles())
+            filesToDelete.add(f);
     }
 
     /**
      * Delete a file and update stats
+     *
+     * @return false if the file has not been deleted
      */
-    private void deleteFile(File f, SyncronizingStatsInfo statsInfo) {
+    private boolean deleteFile(File f, SyncronizingStatsInfo statsInfo) {
         boolean isFile = f.isFile();
         if (!isFile) {
             File[] children = f.listFiles();
             if ((children == null) || (children.length > 0))
-                return;
+                return false;
         }
 
         listener.fileDeleting(this, f.getAbsolutePath());
 
-        boolean deleted = (plugin.getConfig().getGeneralOptions().isSimulationMode()) || f.delete();
+        boolean simulationMode = plugin.getConfig().getGeneralOptions().isSimulationMode();
+        boolean deleted = simulationMode || f.delete();
         if (deleted) {
             if (isFile)
                 statsInfo.addDeleted();
+            if ((manifest != null) && (!simulationMode))
+                manifest.remove(plugin.getPathManager()
+                      .getSrcPath(targetMappings, PathsUtils.toModelPath(f)));
         } else {
             statsInfo.addFailure();
             if (isFile)
@@ -324,101 +415,319 @@ public class SynchronizerThread {
             else
                 listener.dirDeletionFailed(this, f.getAbsolutePath());
         }
+
+        return deleted;
+    }
+
+    /**
+     * Deletes a remote directory replaced by a file, with its content
+     *
+     * @return false if it has not been entirely deleted, e.g. because some of
+     *         its content may not be deleted
+     */
+    private boolean deleteTree(File dir) {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                boolean deleted = (child.isDirectory())
+                      ? deleteTree(child)
+                      : (isReplaceable(child)) && (deleteFile(child, statsInfo));
+                if (!deleted)
+                    return false;
+            }
+        }
+
+        return (isReplaceable(dir)) && (deleteFile(dir, statsInfo));
+    }
+
+    /**
+     * May this remote file be deleted to be replaced by a file of another
+     * type ? Only if it would be deleted once obsolete : it is covered by a
+     * mapping deleting obsolete files, and it is not excluded from deletion
+     */
+    private boolean isReplaceable(File destFile) {
+        ConfigPathsManager pathManager = plugin.getPathManager();
+        String destPath = PathsUtils.toModelPath(destFile);
+        if (pathManager.isExcludedFromDeletion(targetMappings, destPath))
+            return false;
+
+        for (SynchroMapping p : targetMappings.getSynchroMappings()) {
+            if (p.isDeleteObsoleteFiles()) {
+                String mappingDestPath = pathManager.expandPath(p.getDestPath(), true);
+                if (PathsUtils.isAncestor(destPath, mappingDestPath))
+                    return true;
+            }
+        }
+
+        return false;
     }
 
     /**
-     * Try to copy specified file and update stats info
+     * Returns the remote path of a source file, or logs it as excluded and
+     * returns null. Called by the pipeline resolver
      */
-    private void copyFile(final String srcPath, SyncronizingStatsInfo statsInfo) {
-        ConfigPathsManager pathsManager = plugin.getPathManager();
-        final String destPath = pathsManager.getRemotePath(targetMappings, srcPath);
+    String resolveRemotePath(String srcPath) {
+        String destPath = plugin.getPathManager().getRemotePath(targetMappings, srcPath);
 
         // Destination path not found
         if (destPath == null) {
             statsInfo.addExcluded();
-            UIUtil.invokeLaterIfNeeded(new Runnable() {
-                public void run() {
-                    listener.fileCopying(SynchronizerThread.this, srcPath, null, TYPE_COPY_EXCLUDED);
-                }
-            });
-        } else {
-            File srcFile = new File(srcPath);
-            File destFile = new File(destPath);
+            listener.fileCopying(this, srcPath, null, TYPE_COPY_EXCLUDED);
+        }
+
+        return destPath;
+    }
 
-            final int copyType;
-            if (!srcFile.exists())
-                copyType = TYPE_COPY_NOCLASS;
-            else if (!destFile.exists())
+    /**
+     * Try to copy specified file and update stats info. Called by the pipeline
+     * copy workers.
+     * <p/>
+     * Attributes of each file are read once, the destination ones only if
+     * needed. Within a group, source content is read once for all targets.
+     * <p/>
+     * A destination which is the source itself, through a hard link, is
+     * identical : it must never be overwritten by a copy of itself
+     */
+    void copyFile(String srcPath, String destPath) {
+        File srcFile = new File(srcPath);
+        File destFile = new File(destPath);
+        FileAttributes srcAttributes = FileAttributes.read(srcFile);
+        FileAttributes destAttributes = FileAttributes.MISSING;
+
+        int copyType;
+        if ((manifest != null) && (manifest.isUnchanged(srcPath, destPath, srcFile, srcAttributes)))
+            copyType = TYPE_COPY_IDENTICAL;
+        else if (!srcAttributes.exists())
+            copyType = TYPE_COPY_NOCLASS;
+        else {
+            destAttributes = FileAttributes.read(destFile);
+            if (!destAttributes.exists())
                 copyType = TYPE_COPY_NEW;
-            else if (srcFile.lastModified() == destFile.lastModified())
+            else if ((srcAttributes.isSameFile(destAttributes))
+                  || (srcAttributes.getLastModified() == destAttributes.getLastModified()))
                 copyType = TYPE_COPY_IDENTICAL;
-            else if (destFile.isFile())
-                copyType = TYPE_COPY_REPLACE;
             else
-                copyType = -1;
-
-            // File ignored
-            if ((copyType == TYPE_COPY_IDENTICAL)
-                  || (copyType == TYPE_COPY_NOCLASS)) {
-                statsInfo.addIgnored();
-                UIUtil.invokeLaterIfNeeded(new Runnable() {
-                    public void run() {
-                        listener.fileCopying(SynchronizerThread.this, srcPath, destPath, copyType);
-                    }
-                });
+                copyType = TYPE_COPY_REPLACE;
+        }
+
+        // File ignored
+        if ((copyType == TYPE_COPY_IDENTICAL)
+              || (copyType == TYPE_COPY_NOCLASS)) {
+            statsInfo.addIgnored();
+            listener.fileCopying(this, srcPath, destPath, copyType);
+        } else {
+            listener.fileCopying(this, srcPath, destPath, copyType);
+
+            if (!checkParentFile(destFile, destAttributes)) {
+                listener.copyFailed(this,
+                      new Throwable(LabelsFactory.get(LabelsFactory.MSG_CANT_MAKE_DIRS)));
+                statsInfo.addFailure();
+            } else if ((destAttributes.isDirectory())
+                  && (!plugin.getConfig().getGeneralOptions().isSimulationMode())
+                  && (!deleteTree(destFile))) {
+                // Source directory has been replaced by a file
+                listener.copyFailed(this,
+                      new Throwable(LabelsFactory.get(LabelsFactory.MSG_CANT_REPLACE_DIR)));
+                statsInfo.addFailure();
             } else {
-                UIUtil.invokeLaterIfNeeded(new Runnable() {
-                    public void run() {
-                        listener.fileCopying(SynchronizerThread.this, srcPath, destPath, copyType);
+                // Copy files
+                try {
+                    if (!plugin.getConfig().getGeneralOptions().isSimulationMode()) {
+                        if (linkFile(srcFile, destFile)) {
+                            if (manifest != null)
+                                manifest.recordCopy(srcPath, destPath, srcFile);
+                        } else {
+                            boolean hashBlocks = isBlockUpdated(srcAttributes);
+                            // Hashes of the bytes written, recorded by the manifest
+                            ContentDigest digest = (manifest == null) ? null : new ContentDigest(hashBlocks);
+                            if ((!hashBlocks)
+                                  || (!updateFile(srcPath, destPath, srcFile, destFile, srcAttributes,
+                                  destAttributes, digest)))
+                                writeFile(srcFile, destFile, srcAttributes, destAttributes, digest);
+                            if (manifest != null)
+                                manifest.recordCopy(srcPath, destPath, srcAttributes.getLastModified(), digest);
+                        }
                     }
-                });
-
-                if (!checkParentFile(destFile)) {
-                    listener.copyFailed(this,
-                          new Throwable(LabelsFactory.get(LabelsFactory.MSG_CANT_MAKE_DIRS)));
+                    statsInfo.addSuccess();
+                } catch (IOException ex) {
+                    if (manifest != null)
+                        manifest.remove(srcPath);
+                    listener.copyFailed(this, ex);
                     statsInfo.addFailure();
-                    return;
-                } else {
-                    // Copy files
-                    try {
-                        if (!plugin.getConfig().getGeneralOptions().isSimulationMode())
-                            Utils.copyFile(srcFile, destFile);
-                        statsInfo.addSuccess();
-                    } catch (IOException ex) {
-                        listener.copyFailed(this, ex);
-                        statsInfo.addFailure();
-                    }
                 }
             }
         }
     }
 
-    // Create directory if needed and allowed
-    private boolean checkParentFile(File destFile) {
+    /**
+     * Links destination to source if target links files
+     *
+     * @return false if destination must be copied
+     */
+    private boolean linkFile(File srcFile, File destFile) {
+        if (!targetMappings.isLinkFiles())
+            return false;
+
         File parentFile = destFile.getParentFile();
-        boolean parentIsDir;
+        if (unlinkableDestDirs.containsKey(parentFile))
+            return false;
 
-        if (parentFile.isFile()) {
-            parentIsDir = false;
-        } else {
-            if ((!plugin.getConfig().getGeneralOptions().isSimulationMode())
-                  && (!parentFile.exists())
-                  && (plugin.getConfig().getGeneralOptions().isCreateMissingDirs())) {
-                parentIsDir = parentFile.mkdirs();
-            } else
-                parentIsDir = true;
+        if (FileLinker.link(srcFile, destFile))
+            return true;
+
+        unlinkableDestDirs.put(parentFile, Boolean.TRUE);
+        return false;
+    }
+
+    /**
+     * Should only changed blocks of this file be written, as long as they are
+     * known ?
+     */
+    private boolean isBlockUpdated(FileAttributes srcAttributes) {
+        int threshold = plugin.getConfig().getGeneralOptions().getBlockUpdateThreshold();
+        return (manifest != null) && (threshold > 0)
+              && (srcAttributes.getSize() >= threshold * 1024L * 1024L);
+    }
+
+    /**
+     * Writes only changed blocks of destination, if they are known since its
+     * last copy
+     *
+     * @param digest receives hashes of the content written
+     * @return false if destination must be written entirely
+     */
+    private boolean updateFile(String srcPath, String destPath, File srcFile, File destFile,
+                               FileAttributes srcAttributes, FileAttributes destAttributes,
+                               ContentDigest digest)
+          throws IOException {
+        String blockHashes = manifest.getBlockHashes(srcPath, destPath, destAttributes);
+        if (blockHashes == null)
+            return false;
+
+        statsInfo.addBytesSaved(BlockUpdater.update(srcFile, destFile,
+              srcAttributes.getLastModified(), blockHashes, digest));
+        return true;
+    }
+
+    /**
+     * Copies source to destination, from the content shared by the group if
+     * any. Large files are copied by chunks copied concurrently.
+     * <p/>
+     * An existing destination may be a hard link to another file, created by
+     * a run linking files : it is replaced by a new file instead of being
+     * written in place, when the JVM may create links
+     *
+     * @param digest receives hashes of the content written, may be null
+     */
+    private void writeFile(File srcFile, File destFile, FileAttributes srcAttributes,
+                           FileAttributes destAttributes, ContentDigest digest)
+          throws IOException {
+        long threshold = targetMappings.getChunkedCopyThreshold() * 1024L * 1024L;
+        long chunkSize = targetMappings.getCopyChunkSize() * 1024L * 1024L;
+        if ((threshold > 0) && (chunkSize > 0) && (srcAttributes.getSize() >= threshold)) {
+            FileCopier.copyChunked(srcFile, destFile, srcAttributes.getLastModified(), chunkSize,
+                  getChunkExecutor(), digest);
+            return;
         }
+
+        boolean detached = (destAttributes.isFile()) && (FileLinker.isSupported());
+        SourceCache cache = sourceCache;
+        byte[] content = (cache == null) ? null : cache.get(srcFile, srcAttributes);
+        if (content == null) {
+            if (detached)
+                FileCopier.copyDetached(srcFile, destFile, srcAttributes.getLastModified(), digest);
+            else
+                FileCopier.copy(srcFile, destFile, srcAttributes.getLastModified(), digest);
+        } else if (detached)
+            FileCopier.writeDetached(content, destFile, srcAttributes.getLastModified(), digest);
+        else
+            FileCopier.write(content, destFile, srcAttributes.getLastModified(), digest);
+    }
+
+    /**
+     * Returns the executor copying chunks for current run, created on first
+     * use. Workers copying chunks wait for them, chunks need their own threads
+     */
+    private synchronized ExecutorService getChunkExecutor() {
+        if (chunkExecutor == null)
+            chunkExecutor = Executors.newFixedThreadPool(
+                  Math.max(1, plugin.getConfig().getGeneralOptions().getCopyWorkersCount()),
+                  new WorkerThreadFactory(targetMappings.getName(), "chunk copier "));
+
+        return chunkExecutor;
+    }
+
+    /**
+     * Called once the workers of current run have finished
+     */
+    private synchronized void shutdownChunkExecutor() {
+        if (chunkExecutor != null) {
+            chunkExecutor.shutdown();
+            chunkExecutor = null;
+        }
+    }
+
+    // Create directory if needed and allowed. Directories already seen are not
+    // checked again
+    private boolean checkParentFile(File destFile, FileAttributes destAttributes) {
+        // An existing file has an existing parent
+        if (destAttributes.exists())
+            return true;
+
+        File parentFile = destFile.getParentFile();
+        if (existingDestDirs.containsKey(parentFile))
+            return true;
+
+        FileAttributes parentAttributes = FileAttributes.read(parentFile);
+        boolean parentIsDir;
+
+        if (parentAttributes.isDirectory()) {
+            existingDestDirs.put(parentFile, Boolean.TRUE);
+            parentIsDir = true;
+        } else if ((!plugin.getConfig().getGeneralOptions().isSimulationMode())
+              && (plugin.getConfig().getGeneralOptions().isCreateMissingDirs())) {
+            parentIsDir = makeDirs(parentFile);
+            if (parentIsDir)
+                existingDestDirs.put(parentFile, Boolean.TRUE);
+        } else
+            parentIsDir = !parentAttributes.isFile();
         return parentIsDir;
     }
 
+    /**
+     * Creates a remote directory and its missing parents. A remote file
+     * standing where a directory is needed, since source file has been
+     * replaced by a directory, is deleted first
+     */
+    private boolean makeDirs(File dir) {
+        // Another worker may have created it in the meantime
+        if ((dir.mkdirs()) || (dir.isDirectory()))
+            return true;
+
+        File f = dir;
+        while ((f != null) && (!f.exists()))
+            f = f.getParentFile();
+        if ((f == null) || (!f.isFile()) || (!isReplaceable(f)))
+            return false;
+
+        // Another worker may have deleted it in the meantime
+        deleteFile(f, statsInfo);
+        return (dir.mkdirs()) || (dir.isDirectory());
+    }
+
     /**
      * Called after the synchronizing has ended
      */
     protected void finished() {
-        state = STATE_STOPPED;
+        saveManifest();
         UIUtil.invokeLaterIfNeeded(new Runnable() {
             public void run() {
+                if (statsInfo.hasFailures())
+                    restoreChangedPaths();
+                else
+                    changedPaths = null;
                 listener.threadFinished(SynchronizerThread.this, statsInfo);
+                plugin.getCopierThreadManager().threadEnded(SynchronizerThread.this);
             }
         });
 
@@ -432,4 +741,57 @@ public class SynchronizerThread {
             });
         }
     }
+
+    /**
+     * Called once a stopped run has ended, or when stopping an interrupted one
+     */
+    private void stopped() {
+        saveManifest();
+        UIUtil.invokeLaterIfNeeded(new Runnable() {
+            public void run() {
+                restoreChangedPaths();
+                plugin.getCopierThreadManager().threadEnded(SynchronizerThread.this);
+            }
+        });
+    }
+
+    /**
+     * Changed paths of a run which did not complete successfully must be
+     * synchronized by the next run. Called in the UI thread
+     */
+    private void restoreChangedPaths() {
+        if (changedPaths != null) {
+            plugin.getChangedFilesTracker().restoreChangedPaths(targetMappings, changedPaths);
+            changedPaths = null;
+        }
+    }
+
+    private void saveManifest() {
+        if (manifest != null)
+            plugin.getManifestsManager().saveManifest(manifest);
+    }
+
+    /**
+     * Creates named daemon threads for copy workers, and for other threads
+     * helping a run
+     */
+    static final class WorkerThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count;
+
+        private WorkerThreadFactory(String targetName) {
+            this(targetName, "worker ");
+        }
+
+        WorkerThreadFactory(String targetName, String kind) {
+            prefix = "RemoteSynchronizer [" + targetName + "] " + kind;
+            count = new AtomicInteger();
+        }
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
 }
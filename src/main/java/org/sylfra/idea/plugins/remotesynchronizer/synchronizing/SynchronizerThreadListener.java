@@ -5,6 +5,9 @@ import org.sylfra.idea.plugins.remotesynchronizer.model.SyncronizingStatsInfo;
 
 /**
  * Used to handle synchronizing events
+ * <p/>
+ * Events related to files are sent by the synchronizer thread and its copy
+ * workers, not by the event dispatch thread
  *
  * @author <a href="mailto=sylfradev@yahoo.fr">Sylvain FRANCOIS</a>
  */
@@ -24,6 +27,11 @@ public interface SynchronizerThreadListener
   public void fileCopying(SynchronizerThread thread, String src, String dest,
     int copyType);
 
+  public void dirsSkipped(SynchronizerThread thread, int dirsCount);
+
+  public void obsoleteFilesScanning(SynchronizerThread thread, int dirsCount,
+    int filesCount);
+
   public void fileDeleting(SynchronizerThread thread, String path);
 
   public void copyFailed(SynchronizerThread thread, Throwable t);
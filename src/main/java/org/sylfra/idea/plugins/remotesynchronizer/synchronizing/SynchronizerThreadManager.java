@@ -6,18 +6,37 @@ import org.sylfra.idea.plugins.remotesynchronizer.model.Config;
 import org.sylfra.idea.plugins.remotesynchronizer.model.ConfigListener;
 import org.sylfra.idea.plugins.remotesynchronizer.model.TargetMappings;
 import org.sylfra.idea.plugins.remotesynchronizer.ui.ThreadConsolePane;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.PathsUtils;
 
+import javax.swing.Timer;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Maintains a {@link SynchronizerThread} objects list.
  * <p/>
  * When a new synchronizing action is invoked, an available thread is required.
  * If no thread is available (ie. all threads are running), a new thread is
- * created
+ * created, unless the target already runs as many synchronizations as allowed.
+ * <p/>
+ * Requests for a target are merged while they wait : during the configured
+ * delay after the first one, and while no thread may run them. They are then
+ * launched as a single synchronization of all requested files.
+ * <p/>
+ * Requests waiting for other targets with the same files are launched at the
+ * same time, as a {@link FanOutGroup} sharing the selection walk and source
+ * reads, when allowed by general options.
+ * <p/>
+ * Methods are called in the UI thread
  *
  * @author <a href="mailto=sylfradev@yahoo.fr">Sylvain FRANCOIS</a>
  */
@@ -25,11 +44,14 @@ public class SynchronizerThreadManager
       implements ConfigListener {
     private RemoteSynchronizerPlugin plugin;
     private List<SynchronizerThread> threads;
+    // Requests waiting to be launched, by target
+    private Map<TargetMappings, PendingRequest> pendingRequests;
 
     public SynchronizerThreadManager(RemoteSynchronizerPlugin plugin) {
         this.plugin = plugin;
         plugin.getConfig().addConfigListener(this);
         threads = new ArrayList<SynchronizerThread>();
+        pendingRequests = new HashMap<TargetMappings, PendingRequest>();
 
         updateThreads();
     }
@@ -41,27 +63,138 @@ public class SynchronizerThreadManager
         for (TargetMappings targetMappings : plugin.getConfig().getTargetMappings()) {
             if (targetMappings.isActive()) {
                 if (!fromCompilationListener || (fromCompilationListener && targetMappings.isExecuteOnCompile())) {
-                    SynchronizerThread thread = getNotNullAvailableThread(targetMappings);
-                    thread.start(files);
+                    launchSynchronization(targetMappings, files);
                 }
             }
         }
     }
 
     /**
-     * If no thread is available (ie. all threads are running), a new thread
-     * is created
+     * Synchronizes files with a single target. Files are merged with those of
+     * the request waiting for this target, if any
+     */
+    public void launchSynchronization(TargetMappings targetMappings, VirtualFile[] files) {
+        launchSynchronization(targetMappings, files, null);
+    }
+
+    /**
+     * Synchronizes files with a single target
+     *
+     * @param changedPaths paths drained from the changed files tracker for
+     *                     these files, given back to it if the run fails. May
+     *                     be null
+     */
+    public void launchSynchronization(TargetMappings targetMappings, VirtualFile[] files,
+                                      Collection<String> changedPaths) {
+        PendingRequest request = pendingRequests.get(targetMappings);
+        if (request == null) {
+            request = new PendingRequest(targetMappings);
+            pendingRequests.put(targetMappings, request);
+        }
+        request.addFiles(files);
+        if (changedPaths != null)
+            request.changedPaths.addAll(changedPaths);
+
+        int delay = plugin.getConfig().getGeneralOptions().getSyncRequestsDelay();
+        if (delay > 0)
+            request.startTimer(delay);
+        else
+            launchPendingRequest(request);
+    }
+
+    /**
+     * A synchronization has ended, the request waiting for its target may be
+     * launched
+     */
+    public void threadEnded(SynchronizerThread thread) {
+        PendingRequest request = pendingRequests.get(thread.getTargetMappings());
+        if (request != null)
+            launchPendingRequest(request);
+    }
+
+    /**
+     * Launches a waiting request if its delay is over and a thread may run it,
+     * along with the requests waiting for the same files
+     */
+    private void launchPendingRequest(PendingRequest request) {
+        // Request may have been launched with another one before its timer ends
+        if ((request.isDelayed()) || (pendingRequests.get(request.target) != request))
+            return;
+
+        SynchronizerThread thread = acquireThread(request);
+        if (thread == null)
+            return;
+
+        List<SynchronizerThread> groupThreads = new ArrayList<SynchronizerThread>();
+        List<PendingRequest> groupRequests = new ArrayList<PendingRequest>();
+        groupThreads.add(thread);
+        groupRequests.add(request);
+        if (plugin.getConfig().getGeneralOptions().isShareTargetsReads()) {
+            for (PendingRequest other : new ArrayList<PendingRequest>(pendingRequests.values())) {
+                if (other.hasSameFiles(request)) {
+                    SynchronizerThread otherThread = acquireThread(other);
+                    if (otherThread != null) {
+                        groupThreads.add(otherThread);
+                        groupRequests.add(other);
+                    }
+                }
+            }
+        }
+
+        VirtualFile[] files = request.getFiles();
+        FanOutGroup group = (groupThreads.size() == 1) ? null : new FanOutGroup(groupThreads);
+        for (int i = 0; i < groupThreads.size(); i++)
+            groupThreads.get(i).start(files, group, groupRequests.get(i).changedPaths);
+    }
+
+    /**
+     * Removes a waiting request and returns the thread which will run it
+     *
+     * @return null if request must wait for a run of its target to end, or if
+     *         its target is no more active. Changed paths of a dropped request
+     *         are then given back to the changed files tracker
+     */
+    private SynchronizerThread acquireThread(PendingRequest request) {
+        TargetMappings target = request.target;
+        if ((!target.isActive()) || (!plugin.getConfig().getTargetMappings().contains(target))) {
+            pendingRequests.remove(target);
+            request.stopTimer();
+            if (!request.changedPaths.isEmpty())
+                plugin.getChangedFilesTracker().restoreChangedPaths(target, request.changedPaths);
+            return null;
+        }
+
+        SynchronizerThread thread = getAvailableThread(target);
+        if (thread == null) {
+            // Request will be launched when a run of this target ends
+            if (!canCreateThread(target))
+                return null;
+
+            thread = new SynchronizerThread(plugin, target);
+            plugin.getConsolePane().createConsole(plugin, thread, true);
+            threads.add(thread);
+        }
+
+        pendingRequests.remove(target);
+        request.stopTimer();
+        return thread;
+    }
+
+    /**
+     * May a new thread run a synchronization of this target ?
      */
-    private SynchronizerThread getNotNullAvailableThread(TargetMappings target) {
-        SynchronizerThread result = getAvailableThread(target);
-        if (result != null)
-            return result;
+    private boolean canCreateThread(TargetMappings target) {
+        Config.GeneralOptions generalOptions = plugin.getConfig().getGeneralOptions();
+        if (!generalOptions.isAllowConcurrentRuns())
+            return false;
 
-        result = new SynchronizerThread(plugin, target);
-        plugin.getConsolePane().createConsole(plugin, result, true);
-        threads.add(result);
+        int runningCount = 0;
+        for (SynchronizerThread thread : threads) {
+            if ((thread.getTargetMappings().equals(target)) && (!thread.isAvailable()))
+                runningCount++;
+        }
 
-        return result;
+        return (runningCount < generalOptions.getMaxConcurrentRuns());
     }
 
     public SynchronizerThread getAvailableThread(TargetMappings target) {
@@ -153,4 +286,80 @@ public class SynchronizerThreadManager
     public void configChanged(Config config) {
         updateThreads();
     }
+
+    /**
+     * Files waiting to be synchronized with a target
+     */
+    private final class PendingRequest implements ActionListener {
+        private final TargetMappings target;
+        private final List<VirtualFile> files;
+        // Paths drained from the changed files tracker for these files
+        private final Set<String> changedPaths;
+        private Timer timer;
+
+        private PendingRequest(TargetMappings target) {
+            this.target = target;
+            files = new ArrayList<VirtualFile>();
+            changedPaths = new HashSet<String>();
+        }
+
+        /**
+         * Adds files not contained in files already requested
+         */
+        private void addFiles(VirtualFile[] newFiles) {
+            for (VirtualFile newFile : newFiles) {
+                if (contains(newFile))
+                    continue;
+
+                Iterator<VirtualFile> itFiles = files.iterator();
+                while (itFiles.hasNext()) {
+                    if (PathsUtils.isAncestor(newFile, itFiles.next()))
+                        itFiles.remove();
+                }
+                files.add(newFile);
+            }
+        }
+
+        private boolean contains(VirtualFile f) {
+            for (VirtualFile file : files) {
+                if (PathsUtils.isAncestor(file, f))
+                    return true;
+            }
+
+            return false;
+        }
+
+        private VirtualFile[] getFiles() {
+            return files.toArray(new VirtualFile[files.size()]);
+        }
+
+        private boolean hasSameFiles(PendingRequest other) {
+            return new HashSet<VirtualFile>(files).equals(new HashSet<VirtualFile>(other.files));
+        }
+
+        /**
+         * Delays request, unless it is already delayed : requests are not
+         * postponed indefinitely by a continuous burst
+         */
+        private void startTimer(int delay) {
+            if (timer == null) {
+                timer = new Timer(delay, this);
+                timer.setRepeats(false);
+                timer.start();
+            }
+        }
+
+        private void stopTimer() {
+            if (timer != null)
+                timer.stop();
+        }
+
+        private boolean isDelayed() {
+            return (timer != null) && (timer.isRunning());
+        }
+
+        public void actionPerformed(ActionEvent e) {
+            launchPendingRequest(this);
+        }
+    }
 }
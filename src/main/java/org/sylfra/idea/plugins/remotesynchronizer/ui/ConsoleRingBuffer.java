@@ -0,0 +1,115 @@
+package org.sylfra.idea.plugins.remotesynchronizer.ui;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue of console lines, filled by any thread and drained
+ * by a single consumer, the event dispatch thread.
+ * <p/>
+ * Each slot carries a sequence number telling whether it may be written or
+ * read at a given position, so producers only compete on the write position
+ * and never wait for each other.
+ * <p/>
+ * Producers never wait for the consumer either : when the buffer is full, the
+ * oldest element is removed to make room for the new one, and counted as
+ * dropped.
+ */
+class ConsoleRingBuffer<T> {
+    private final int mask;
+    private final AtomicReferenceArray<T> elements;
+    private final AtomicLongArray sequences;
+    // Next position to write, shared by producers
+    private final AtomicLong tail;
+    // Next position to read, also moved by producers dropping elements
+    private final AtomicLong head;
+    private final AtomicLong droppedCount;
+
+    /**
+     * @param capacity rounded up to a power of 2
+     */
+    public ConsoleRingBuffer(int capacity) {
+        int size = 2;
+        while (size < capacity)
+            size <<= 1;
+        mask = size - 1;
+        elements = new AtomicReferenceArray<T>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            sequences.set(i, i);
+        tail = new AtomicLong();
+        head = new AtomicLong();
+        droppedCount = new AtomicLong();
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Adds an element, may be called by any thread. When buffer is full, the
+     * oldest element is dropped
+     */
+    public void add(T element) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    elements.set(index, element);
+                    // Publishes the element to the consumer
+                    sequences.set(index, pos + 1);
+                    return;
+                }
+            } else if (diff < 0) {
+                // Slot not released yet : buffer is full, unless the oldest
+                // element is being removed or written
+                if (poll() != null)
+                    droppedCount.incrementAndGet();
+                else
+                    Thread.yield();
+            }
+
+            // Another producer took this position, or room has been made
+            pos = tail.get();
+        }
+    }
+
+    /**
+     * Removes the oldest element. Called by the consumer, and by producers
+     * when buffer is full
+     *
+     * @return null if buffer is empty
+     */
+    public T poll() {
+        long pos = head.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff < 0) {
+                // Empty, or element not published yet
+                return null;
+            }
+
+            if ((diff == 0) && (head.compareAndSet(pos, pos + 1))) {
+                T result = elements.get(index);
+                elements.set(index, null);
+                // Releases the slot for the next round of producers
+                sequences.set(index, pos + mask + 1);
+                return result;
+            }
+
+            // Another thread removed this element
+            pos = head.get();
+        }
+    }
+
+    /**
+     * Returns the number of elements dropped since previous call
+     */
+    public long takeDroppedCount() {
+        return droppedCount.getAndSet(0);
+    }
+}
@@ -2,7 +2,6 @@ package org.sylfra.idea.plugins.remotesynchronizer.ui;
 
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.JBColor;
-import com.intellij.util.ui.UIUtil;
 import org.sylfra.idea.plugins.remotesynchronizer.model.Config;
 import org.sylfra.idea.plugins.remotesynchronizer.model.ConfigListener;
 import org.sylfra.idea.plugins.remotesynchronizer.model.SyncronizingStatsInfo;
@@ -10,15 +9,25 @@ import org.sylfra.idea.plugins.remotesynchronizer.synchronizing.SynchronizerThre
 import org.sylfra.idea.plugins.remotesynchronizer.synchronizing.SynchronizerThreadListener;
 import org.sylfra.idea.plugins.remotesynchronizer.utils.ConfigPathsManager;
 import org.sylfra.idea.plugins.remotesynchronizer.utils.LabelsFactory;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.PathsCache;
 
 import javax.swing.*;
 import javax.swing.text.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Logs component. A thread console is linked to one thread synchronizer
+ * <p/>
+ * Lines may be logged by any thread : they are buffered and flushed to the
+ * document by the event dispatch thread, at most once per
+ * {@link #FLUSH_DELAY}, in one insertion per run of lines sharing the same
+ * style. Loggers never wait for the display : when the buffer is full, oldest
+ * lines are dropped and their count is logged instead.
  *
  * @author <a href="mailto=sylfradev@yahoo.fr">Sylvain FRANCOIS</a>
  */
@@ -38,7 +47,15 @@ public class ThreadConsole extends JScrollPane
                 INFO_COPY_EXCLUDED
           };
 
-    private final static DateFormat TIME_FORMATTER = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    // Formatters are not thread safe, and copy workers log files
+    private final static ThreadLocal<DateFormat> TIME_FORMATTER = new ThreadLocal<DateFormat>() {
+        protected DateFormat initialValue() {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        }
+    };
+
+    private static final int FLUSH_DELAY = 100;
+    private static final int BUFFER_CAPACITY = 8192;
 
     private final static String HEADER_STYLE = "HeaderStyle";
     private final static String DEFAULT_STYLE = "DefaultStyle";
@@ -51,8 +68,11 @@ public class ThreadConsole extends JScrollPane
     private ThreadConsole mainConsole;
     private JTextPane textPane;
     private Config config;
-    private boolean cleared;
+    private volatile boolean cleared;
     private boolean simulationMode;
+    private final ConsoleRingBuffer<ConsoleLine> pendingLines;
+    private final AtomicBoolean flushScheduled;
+    private final Timer flushTimer;
 
     public ThreadConsole(ThreadConsolePane consolePane, Config config,
                          SynchronizerThread thread, String title) {
@@ -68,6 +88,15 @@ public class ThreadConsole extends JScrollPane
         setViewportView(textPane);
         textPane.setEditable(false);
 
+        pendingLines = new ConsoleRingBuffer<ConsoleLine>(BUFFER_CAPACITY);
+        flushScheduled = new AtomicBoolean();
+        flushTimer = new Timer(FLUSH_DELAY, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                flush();
+            }
+        });
+        flushTimer.setRepeats(false);
+
         updateFont();
         clear();
     }
@@ -146,6 +175,10 @@ public class ThreadConsole extends JScrollPane
     }
 
     public void clear() {
+        // Lines not displayed yet are discarded too
+        while (pendingLines.poll() != null) {
+        }
+
         try {
             textPane.getDocument().remove(0, textPane.getDocument().getLength());
         } catch (BadLocationException e) {
@@ -185,24 +218,87 @@ public class ThreadConsole extends JScrollPane
         append(s, simulationMode ? SIMULATION_STYLE : DEFAULT_STYLE);
     }
 
-    private void append(final String s, final String styleName) {
-        UIUtil.invokeLaterIfNeeded(new Runnable() {
-            public void run() {
-                try {
-                    Document doc = textPane.getDocument();
-                    int start = doc.getLength();
-                    // doc.insertString(start, s + "\n", textPane.getStyle(styleName));
-                    doc.insertString(start, "*" + s + "\n", textPane.getStyle(styleName));
-                    doc.remove(start, 1);
-
-                    // Add a temporary '*' and then remove it because of a bug of the
-                    // StyledEditorKit, see the test class
-                } catch (BadLocationException e){
-                    e.printStackTrace();
+    private void append(String s, String styleName) {
+        pendingLines.add(new ConsoleLine(s, styleName));
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true))
+            flushTimer.start();
+    }
+
+    /**
+     * Inserts buffered lines into the document, called by the event dispatch
+     * thread
+     */
+    private void flush() {
+        // Lines added from now on will schedule another flush
+        flushScheduled.set(false);
+
+        Document doc = textPane.getDocument();
+        StringBuilder chunk = new StringBuilder();
+        String chunkStyle = null;
+        int count = 0;
+        try {
+            // Dropped lines were older than the remaining ones
+            long droppedCount = pendingLines.takeDroppedCount();
+            if (droppedCount > 0) {
+                chunkStyle = ERROR_STYLE;
+                chunk.append(LabelsFactory.get(LabelsFactory.MSG_LINES_DROPPED, droppedCount))
+                      .append('\n');
+            }
+
+            ConsoleLine line;
+            // Lines added while flushing are left to the next flush
+            while ((count < BUFFER_CAPACITY) && ((line = pendingLines.poll()) != null)) {
+                if ((chunkStyle != null) && (!chunkStyle.equals(line.styleName))) {
+                    insert(doc, chunk, chunkStyle);
+                    chunk.setLength(0);
                 }
-                scrollToEnd();
+                chunkStyle = line.styleName;
+                chunk.append(line.text).append('\n');
+                count++;
             }
-        });
+
+            if (chunkStyle == null)
+                return;
+
+            insert(doc, chunk, chunkStyle);
+            trimLines(doc);
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+
+        if (count == BUFFER_CAPACITY)
+            scheduleFlush();
+
+        scrollToEnd();
+    }
+
+    private void insert(Document doc, CharSequence text, String styleName)
+          throws BadLocationException {
+        int start = doc.getLength();
+        doc.insertString(start, "*" + text, textPane.getStyle(styleName));
+        doc.remove(start, 1);
+
+        // Add a temporary '*' and then remove it because of a bug of the
+        // StyledEditorKit, see the test class
+    }
+
+    /**
+     * Removes oldest lines beyond the maximum lines count
+     */
+    private void trimLines(Document doc) throws BadLocationException {
+        int maxLines = config.getLogOptions().getMaxConsoleLines();
+        if (maxLines <= 0)
+            return;
+
+        // Last element is the empty line following the last line break
+        Element root = doc.getDefaultRootElement();
+        int excess = root.getElementCount() - 1 - maxLines;
+        if (excess > 0)
+            doc.remove(0, root.getElement(excess).getStartOffset());
     }
 
     private void scrollToEnd() {
@@ -268,6 +364,10 @@ public class ThreadConsole extends JScrollPane
                 append(statsInfo.getSuccessCount() + " " + s);
             }
 
+            if (statsInfo.getBytesSaved() > 0)
+                append(LabelsFactory.get(LabelsFactory.MSG_BYTES_SAVED,
+                      statsInfo.getBytesSaved() / 1024));
+
             if (statsInfo.getDeletedCount() > 0) {
                 String s = ((statsInfo.getDeletedCount() == 1)
                       ? LabelsFactory.get(LabelsFactory.MSG_NB_FILE_DELETED)
@@ -293,6 +393,11 @@ public class ThreadConsole extends JScrollPane
             }
         }
 
+        PathsCache pathsCache = copierThread.getPlugin().getPathManager().getPathsCache();
+        append(LabelsFactory.get(LabelsFactory.MSG_PATHS_CACHE_STATS,
+              pathsCache.getSize(), pathsCache.getHitCount(), pathsCache.getMissCount(),
+              pathsCache.getEvictionCount()));
+
         consolePane.updateTitle(this);
         breakLogs();
         cleared = false;
@@ -306,7 +411,7 @@ public class ThreadConsole extends JScrollPane
         if (dest != null)
             dest = pathsManager.toPresentablePath(dest);
 
-        String time = TIME_FORMATTER.format(new Date());
+        String time = getTime();
         String copyTypeInfo = (copyType == -1) ? "" : COPY_INFOS[copyType];
 
         if (dest == null) {
@@ -324,8 +429,22 @@ public class ThreadConsole extends JScrollPane
         cleared = false;
     }
 
+    public void dirsSkipped(SynchronizerThread thread, int dirsCount) {
+        if (config.getLogOptions().isLogExludedPaths())
+            append(getTime() + " " + INFO_COPY_EXCLUDED + " "
+                  + LabelsFactory.get(LabelsFactory.MSG_DIRS_SKIPPED, dirsCount));
+    }
+
+    public void obsoleteFilesScanning(SynchronizerThread thread, int dirsCount,
+                                      int filesCount) {
+        String time = getTime();
+        append(time + " " + LabelsFactory.get(LabelsFactory.MSG_SCANNING_OBSOLETE_FILES,
+              dirsCount, filesCount));
+        cleared = false;
+    }
+
     public void fileDeleting(SynchronizerThread thread, String path) {
-        String time = TIME_FORMATTER.format(new Date());
+        String time = getTime();
         path = thread.getPlugin().getPathManager().toPresentablePath(path);
         append(time + " " + INFO_COPY_DELETED + " " + path);
     }
@@ -347,4 +466,18 @@ public class ThreadConsole extends JScrollPane
         append(LabelsFactory.get(LabelsFactory.MSG_CANT_DELETE_FILE), ERROR_STYLE);
         cleared = false;
     }
+
+    private static String getTime() {
+        return TIME_FORMATTER.get().format(new Date());
+    }
+
+    private static final class ConsoleLine {
+        private final String text;
+        private final String styleName;
+
+        private ConsoleLine(String text, String styleName) {
+            this.text = text;
+            this.styleName = styleName;
+        }
+    }
 }
@@ -26,10 +26,17 @@ import java.util.Arrays;
 
 public class TargetTab extends JPanel
 {
+  private final static int MAX_CHUNKED_COPY_THRESHOLD = 65536;
+  private final static int MAX_COPY_CHUNK_SIZE = 1024;
+
   private int initialPos;
   private TargetMappings targetMappings;
   private JCheckBox cbActive;
   private JCheckBox cbExecuteOnCompile;
+  private JCheckBox cbUseManifest;
+  private JCheckBox cbLinkFiles;
+  private JSpinner spChunkedCopyThreshold;
+  private JSpinner spCopyChunkSize;
   private SynchroPathsTable synchroTable;
   private ExcludedCopyPathsTable excludedCopyTable;
   private ExcludedDeletePathsTable excludedDeleteTable;
@@ -47,6 +54,13 @@ public class TargetTab extends JPanel
     cbExecuteOnCompile = new JCheckBox(LabelsFactory.get(LabelsFactory.LB_EXECUTE_ON_COMPILE), targetMappings.isExecuteOnCompile());
     cbActive = new JCheckBox(LabelsFactory.get(LabelsFactory.LB_ACTIVE),
       targetMappings.isActive());
+    cbUseManifest = new JCheckBox(LabelsFactory.get(LabelsFactory.LB_USE_MANIFEST),
+      targetMappings.isUseManifest());
+    cbLinkFiles = new JCheckBox(LabelsFactory.get(LabelsFactory.LB_LINK_FILES),
+      targetMappings.isLinkFiles());
+    spChunkedCopyThreshold = new JSpinner(
+      new SpinnerNumberModel(0, 0, MAX_CHUNKED_COPY_THRESHOLD, 1));
+    spCopyChunkSize = new JSpinner(new SpinnerNumberModel(1, 1, MAX_COPY_CHUNK_SIZE, 1));
 
     cbActive.addChangeListener(new ChangeListener()
     {
@@ -80,6 +94,10 @@ public class TargetTab extends JPanel
   {
     return (cbActive.isSelected() != targetMappings.isActive())
       || (cbExecuteOnCompile.isSelected() != targetMappings.isExecuteOnCompile())
+      || (cbUseManifest.isSelected() != targetMappings.isUseManifest())
+      || (cbLinkFiles.isSelected() != targetMappings.isLinkFiles())
+      || (getSpinnerValue(spChunkedCopyThreshold) != targetMappings.getChunkedCopyThreshold())
+      || (getSpinnerValue(spCopyChunkSize) != targetMappings.getCopyChunkSize())
       || (!Arrays.asList(targetMappings.getSynchroMappings())
       .equals(synchroTable.getData()))
       || (!Arrays.asList(targetMappings.getExcludedCopyPaths())
@@ -91,6 +109,10 @@ public class TargetTab extends JPanel
   public void reset()
   {
     cbActive.setSelected(targetMappings.isActive());
+    cbUseManifest.setSelected(targetMappings.isUseManifest());
+    cbLinkFiles.setSelected(targetMappings.isLinkFiles());
+    spChunkedCopyThreshold.setValue(targetMappings.getChunkedCopyThreshold());
+    spCopyChunkSize.setValue(Math.max(1, targetMappings.getCopyChunkSize()));
     synchroTable.setData(cloneList(targetMappings.getSynchroMappings()));
     excludedCopyTable.setData(cloneList(targetMappings.getExcludedCopyPaths()));
     excludedDeleteTable.setData(cloneList(targetMappings.getExcludedDeletePaths()));
@@ -100,6 +122,10 @@ public class TargetTab extends JPanel
   {
     targetMappings.setActive(cbActive.isSelected());
     targetMappings.setExecuteOnCompile(cbExecuteOnCompile.isSelected());
+    targetMappings.setUseManifest(cbUseManifest.isSelected());
+    targetMappings.setLinkFiles(cbLinkFiles.isSelected());
+    targetMappings.setChunkedCopyThreshold(getSpinnerValue(spChunkedCopyThreshold));
+    targetMappings.setCopyChunkSize(getSpinnerValue(spCopyChunkSize));
     targetMappings.setSynchroMappings(synchroTable.getData()
       .toArray(new SynchroMapping[synchroTable.getData().size()]));
     targetMappings.setExcludedCopyPaths(excludedCopyTable.getData()
@@ -114,6 +140,15 @@ public class TargetTab extends JPanel
     pnActive.add(cbActive, BorderLayout.WEST);
     JPanel pnExecComp = new JPanel(new BorderLayout());
     pnExecComp.add(cbExecuteOnCompile, BorderLayout.WEST);
+    JPanel pnManifest = new JPanel(new BorderLayout());
+    pnManifest.add(cbUseManifest, BorderLayout.WEST);
+    JPanel pnLinkFiles = new JPanel(new BorderLayout());
+    pnLinkFiles.add(cbLinkFiles, BorderLayout.WEST);
+    JPanel pnChunkedCopy = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+    pnChunkedCopy.add(new JLabel(LabelsFactory.get(LabelsFactory.LB_CHUNKED_COPY_THRESHOLD)));
+    pnChunkedCopy.add(spChunkedCopyThreshold);
+    pnChunkedCopy.add(new JLabel(LabelsFactory.get(LabelsFactory.LB_COPY_CHUNK_SIZE)));
+    pnChunkedCopy.add(spCopyChunkSize);
     JLabel xInfo = new JLabel("X : "
       + LabelsFactory.get(LabelsFactory.LB_DELETE_OBSOLETE));
     xInfo.setFont(xInfo.getFont().deriveFont(Font.ITALIC));
@@ -142,6 +177,15 @@ public class TargetTab extends JPanel
     c.gridy++;
     add(pnExecComp, c);
 
+    c.gridy++;
+    add(pnManifest, c);
+
+    c.gridy++;
+    add(pnLinkFiles, c);
+
+    c.gridy++;
+    add(pnChunkedCopy, c);
+
     c.gridy++;
     c.weighty = 1.0;
     add(pnIncluded, c);
@@ -191,6 +235,11 @@ public class TargetTab extends JPanel
     return pnMain;
   }
 
+  private static int getSpinnerValue(JSpinner spinner)
+  {
+    return ((Number) spinner.getValue()).intValue();
+  }
+
   public boolean isSetAsActive()
   {
     return cbActive.isSelected();
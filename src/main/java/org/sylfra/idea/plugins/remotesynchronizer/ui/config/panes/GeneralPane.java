@@ -10,12 +10,20 @@ import org.sylfra.idea.plugins.remotesynchronizer.utils.PathsUtils;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
 
 /**
  * @author <a href="mailto=sylfradev@yahoo.fr">Sylvain FRANCOIS</a>
  */
 public final class GeneralPane extends JPanel implements IConfigPane
 {
+  private final static int MAX_COPY_WORKERS_COUNT = 32;
+  private final static int MAX_CONCURRENT_RUNS = 16;
+  private final static int MAX_SYNC_REQUESTS_DELAY = 60000;
+  private final static int SYNC_REQUESTS_DELAY_STEP = 100;
+  private final static int MAX_BLOCK_UPDATE_THRESHOLD = 4096;
+
   private final Project project;
   private final ConfigPathsManager pathManager;
   private JCheckBox ckStoreRelativePaths;
@@ -23,6 +31,12 @@ public final class GeneralPane extends JPanel implements IConfigPane
   private JCheckBox ckCreateMissingDirs;
   private JCheckBox ckSimulationMode;
   private JCheckBox ckAllowConcurrentRuns;
+  private JCheckBox ckIncrementalSyncOnCompile;
+  private JCheckBox ckShareTargetsReads;
+  private JSpinner spCopyWorkersCount;
+  private JSpinner spMaxConcurrentRuns;
+  private JSpinner spSyncRequestsDelay;
+  private JSpinner spBlockUpdateThreshold;
 
   public GeneralPane(Project project, ConfigPathsManager pathManager)
   {
@@ -43,6 +57,12 @@ public final class GeneralPane extends JPanel implements IConfigPane
       && (generalOptions.isSaveBeforeCopy() == ckSaveBeforeCopy.isSelected())
       && (generalOptions.isCreateMissingDirs() == ckCreateMissingDirs.isSelected())
       && (generalOptions.isAllowConcurrentRuns() == ckAllowConcurrentRuns.isSelected())
+      && (generalOptions.isIncrementalSyncOnCompile() == ckIncrementalSyncOnCompile.isSelected())
+      && (generalOptions.isShareTargetsReads() == ckShareTargetsReads.isSelected())
+      && (generalOptions.getCopyWorkersCount() == getCopyWorkersCount())
+      && (generalOptions.getMaxConcurrentRuns() == getMaxConcurrentRuns())
+      && (generalOptions.getSyncRequestsDelay() == getSyncRequestsDelay())
+      && (generalOptions.getBlockUpdateThreshold() == getBlockUpdateThreshold())
       && (generalOptions.isSimulationMode() == ckSimulationMode.isSelected()));
   }
 
@@ -55,6 +75,13 @@ public final class GeneralPane extends JPanel implements IConfigPane
     ckCreateMissingDirs.setSelected(generalOptions.isCreateMissingDirs());
     ckSimulationMode.setSelected(generalOptions.isSimulationMode());
     ckAllowConcurrentRuns.setSelected(generalOptions.isAllowConcurrentRuns());
+    ckIncrementalSyncOnCompile.setSelected(generalOptions.isIncrementalSyncOnCompile());
+    ckShareTargetsReads.setSelected(generalOptions.isShareTargetsReads());
+    spCopyWorkersCount.setValue(generalOptions.getCopyWorkersCount());
+    spMaxConcurrentRuns.setValue(generalOptions.getMaxConcurrentRuns());
+    spSyncRequestsDelay.setValue(generalOptions.getSyncRequestsDelay());
+    spBlockUpdateThreshold.setValue(generalOptions.getBlockUpdateThreshold());
+    spMaxConcurrentRuns.setEnabled(generalOptions.isAllowConcurrentRuns());
   }
 
   public void apply(Config config)
@@ -85,6 +112,32 @@ public final class GeneralPane extends JPanel implements IConfigPane
     generalOptions.setCreateMissingDirs(ckCreateMissingDirs.isSelected());
     generalOptions.setSimulationMode(ckSimulationMode.isSelected());
     generalOptions.setAllowConcurrentRuns(ckAllowConcurrentRuns.isSelected());
+    generalOptions.setIncrementalSyncOnCompile(ckIncrementalSyncOnCompile.isSelected());
+    generalOptions.setShareTargetsReads(ckShareTargetsReads.isSelected());
+    generalOptions.setCopyWorkersCount(getCopyWorkersCount());
+    generalOptions.setMaxConcurrentRuns(getMaxConcurrentRuns());
+    generalOptions.setSyncRequestsDelay(getSyncRequestsDelay());
+    generalOptions.setBlockUpdateThreshold(getBlockUpdateThreshold());
+  }
+
+  private int getCopyWorkersCount()
+  {
+    return ((Number) spCopyWorkersCount.getValue()).intValue();
+  }
+
+  private int getMaxConcurrentRuns()
+  {
+    return ((Number) spMaxConcurrentRuns.getValue()).intValue();
+  }
+
+  private int getSyncRequestsDelay()
+  {
+    return ((Number) spSyncRequestsDelay.getValue()).intValue();
+  }
+
+  private int getBlockUpdateThreshold()
+  {
+    return ((Number) spBlockUpdateThreshold.getValue()).intValue();
   }
 
   public void buildUI(ConfigPathsManager pathsManager)
@@ -94,6 +147,22 @@ public final class GeneralPane extends JPanel implements IConfigPane
     ckCreateMissingDirs = new JCheckBox(LabelsFactory.get(LabelsFactory.LB_CREATE_MISSING_DIRS));
     ckSimulationMode = new JCheckBox(LabelsFactory.get(LabelsFactory.LB_SIMULATION_MODE));
     ckAllowConcurrentRuns = new JCheckBox(LabelsFactory.get(LabelsFactory.LB_ALLOW_CONCURRENT_RUNS));
+    ckIncrementalSyncOnCompile = new JCheckBox(LabelsFactory.get(LabelsFactory.LB_INCREMENTAL_SYNC));
+    ckShareTargetsReads = new JCheckBox(LabelsFactory.get(LabelsFactory.LB_SHARE_TARGETS_READS));
+    spCopyWorkersCount = new JSpinner(new SpinnerNumberModel(1, 1, MAX_COPY_WORKERS_COUNT, 1));
+    spMaxConcurrentRuns = new JSpinner(new SpinnerNumberModel(1, 1, MAX_CONCURRENT_RUNS, 1));
+    spSyncRequestsDelay = new JSpinner(
+      new SpinnerNumberModel(0, 0, MAX_SYNC_REQUESTS_DELAY, SYNC_REQUESTS_DELAY_STEP));
+    spBlockUpdateThreshold = new JSpinner(
+      new SpinnerNumberModel(0, 0, MAX_BLOCK_UPDATE_THRESHOLD, 1));
+
+    ckAllowConcurrentRuns.addItemListener(new ItemListener()
+    {
+      public void itemStateChanged(ItemEvent e)
+      {
+        spMaxConcurrentRuns.setEnabled(ckAllowConcurrentRuns.isSelected());
+      }
+    });
 
     setLayout(new GridBagLayout());
     GridBagConstraints c = new GridBagConstraints();
@@ -119,7 +188,40 @@ public final class GeneralPane extends JPanel implements IConfigPane
 
     // Create missing dirs
     c.gridy++;
-    c.weighty = 1.0;
     add(ckAllowConcurrentRuns, c);
+
+    // Incremental synchronization after compilation
+    c.gridy++;
+    add(ckIncrementalSyncOnCompile, c);
+
+    // Targets launched together
+    c.gridy++;
+    add(ckShareTargetsReads, c);
+
+    // Concurrent runs per target
+    c.gridy++;
+    add(createSpinnerPanel(LabelsFactory.LB_MAX_CONCURRENT_RUNS, spMaxConcurrentRuns), c);
+
+    // Delay before launching requests
+    c.gridy++;
+    add(createSpinnerPanel(LabelsFactory.LB_SYNC_REQUESTS_DELAY, spSyncRequestsDelay), c);
+
+    // Writing changed blocks only
+    c.gridy++;
+    add(createSpinnerPanel(LabelsFactory.LB_BLOCK_UPDATE_THRESHOLD, spBlockUpdateThreshold), c);
+
+    // Copy workers count
+    c.gridy++;
+    c.weighty = 1.0;
+    add(createSpinnerPanel(LabelsFactory.LB_COPY_WORKERS_COUNT, spCopyWorkersCount), c);
+  }
+
+  private JPanel createSpinnerPanel(String labelKey, JSpinner spinner)
+  {
+    JPanel result = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+    result.add(new JLabel(LabelsFactory.get(labelKey)));
+    result.add(spinner);
+
+    return result;
   }
 }
@@ -17,6 +17,8 @@ public final class LogPane extends JPanel implements IConfigPane
       "6", "7", "8", "9", "10", "11", "12", "13", "14",
       "16", "18", "20", "24", "28", "32", "48", "64"
     };
+  private final static int MAX_CONSOLE_LINES = 1000000;
+  private final static int CONSOLE_LINES_STEP = 1000;
   private final static String[] FONT_NAMES = GraphicsEnvironment
     .getLocalGraphicsEnvironment().getAvailableFontFamilyNames();
 
@@ -27,6 +29,7 @@ public final class LogPane extends JPanel implements IConfigPane
   private JCheckBox ckLogSrcPaths;
   private JCheckBox ckLogExludedPaths;
   private JCheckBox ckLogIdenticalPaths;
+  private JSpinner spMaxConsoleLines;
 
   public LogPane()
   {
@@ -48,7 +51,8 @@ public final class LogPane extends JPanel implements IConfigPane
       && (logOptions.isLogSrcPaths() == ckLogSrcPaths.isSelected())
       && (logOptions.isLogIdenticalPaths() == ckLogIdenticalPaths.isSelected())
       && (logOptions.isClearBeforeSynchro() == ckClearBeforeSynchro.isSelected())
-      && (logOptions.isAutoPopup() == ckAutoPopup.isSelected()));
+      && (logOptions.isAutoPopup() == ckAutoPopup.isSelected())
+      && (logOptions.getMaxConsoleLines() == getMaxConsoleLines()));
 }
 
   public void reset(Config config)
@@ -62,6 +66,7 @@ public final class LogPane extends JPanel implements IConfigPane
     ckLogIdenticalPaths.setSelected(logOptions.isLogIdenticalPaths());
     ckClearBeforeSynchro.setSelected(logOptions.isClearBeforeSynchro());
     ckAutoPopup.setSelected(logOptions.isAutoPopup());
+    spMaxConsoleLines.setValue(logOptions.getMaxConsoleLines());
 }
 
   public void apply(Config config)
@@ -74,6 +79,12 @@ public final class LogPane extends JPanel implements IConfigPane
     logOptions.setLogIdenticalPaths(ckLogIdenticalPaths.isSelected());
     logOptions.setClearBeforeSynchro(ckClearBeforeSynchro.isSelected());
     logOptions.setAutoPopup(ckAutoPopup.isSelected());
+    logOptions.setMaxConsoleLines(getMaxConsoleLines());
+}
+
+  private int getMaxConsoleLines()
+  {
+    return ((Number) spMaxConsoleLines.getValue()).intValue();
 }
 
   public void buildUI(ConfigPathsManager pathsManager)
@@ -82,6 +93,8 @@ public final class LogPane extends JPanel implements IConfigPane
       new JCheckBox(LabelsFactory.get(LabelsFactory.LB_CLEAR_BEFORE_SYNCHRO));
     ckAutoPopup =
       new JCheckBox(LabelsFactory.get(LabelsFactory.LB_AUTO_POPUP_LOGS));
+    spMaxConsoleLines = new JSpinner(
+      new SpinnerNumberModel(0, 0, MAX_CONSOLE_LINES, CONSOLE_LINES_STEP));
 
     setLayout(new GridBagLayout());
     GridBagConstraints c = new GridBagConstraints();
@@ -97,6 +110,10 @@ public final class LogPane extends JPanel implements IConfigPane
     c.gridy++;
     add(ckAutoPopup, c);
 
+    // Max console lines
+    c.gridy++;
+    add(createMaxConsoleLinesPanel(), c);
+
     // Font panel
     c.gridy++;
     add(createFontPanel(), c);
@@ -141,6 +158,15 @@ public final class LogPane extends JPanel implements IConfigPane
     return result;
 }
 
+  private JPanel createMaxConsoleLinesPanel()
+  {
+    JPanel result = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+    result.add(new JLabel(LabelsFactory.get(LabelsFactory.LB_MAX_CONSOLE_LINES)));
+    result.add(spMaxConsoleLines);
+
+    return result;
+  }
+
   private JPanel createShowPathsPanel()
   {
     ckLogSrcPaths =
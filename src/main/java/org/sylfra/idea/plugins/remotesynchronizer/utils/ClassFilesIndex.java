@@ -0,0 +1,294 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of compiler output directories, giving the class files compiled from
+ * a source file.
+ * <p/>
+ * Each package directory of an output directory is listed once, its class
+ * files being grouped by the source file declared by their outer class. This
+ * way, inner, anonymous and secondary top level classes are found without
+ * loading PSI nor listing the directory again for each class.
+ * <p/>
+ * A package directory is listed again when the compiler generates a file in
+ * it, or when its modification date changes, e.g. after an external build.
+ */
+public class ClassFilesIndex
+{
+  private static final String CLASS_EXTENSION = ".class";
+  private static final String SOURCE_EXTENSION = ".java";
+  private static final int CLASS_MAGIC = 0xCAFEBABE;
+  private static final String SOURCE_FILE_ATTRIBUTE = "SourceFile";
+
+  // Package directories by model path
+  private final Map<String, PackageDir> packageDirs;
+
+  public ClassFilesIndex()
+  {
+    packageDirs = new ConcurrentHashMap<String, PackageDir>();
+  }
+
+  /**
+   * Returns paths of class files compiled from a source file
+   *
+   * @param outputPath  model path of the output directory
+   * @param packagePath package of the source file, with '/' separators
+   * @param sourceName  name of the source file
+   * @return existing class files paths, followed by the path of the main
+   *         class file even if it does not exist
+   */
+  public List<String> getClassFilePaths(String outputPath, String packagePath,
+    String sourceName)
+  {
+    String dirPath = (packagePath.length() == 0)
+      ? outputPath
+      : outputPath + '/' + packagePath;
+    long lastModified = new File(dirPath).lastModified();
+
+    PackageDir packageDir = packageDirs.get(dirPath);
+    if ((packageDir == null) || (packageDir.lastModified != lastModified))
+    {
+      packageDir = new PackageDir(dirPath, lastModified);
+      packageDirs.put(dirPath, packageDir);
+    }
+
+    int i = sourceName.lastIndexOf('.');
+    String mainPath = dirPath + '/'
+      + ((i == -1) ? sourceName : sourceName.substring(0, i)) + CLASS_EXTENSION;
+
+    List<String> result = new ArrayList<String>();
+    for (String path : packageDir.getClassFilePaths(sourceName))
+    {
+      if (!path.equals(mainPath))
+      {
+        result.add(path);
+      }
+    }
+    result.add(mainPath);
+
+    return result;
+  }
+
+  /**
+   * A file has been generated by the compiler, its directory will be listed
+   * again
+   *
+   * @param path model path of the generated file
+   */
+  public void fileGenerated(String path)
+  {
+    int i = path.lastIndexOf('/');
+    if (i != -1)
+    {
+      packageDirs.remove(path.substring(0, i));
+    }
+  }
+
+  public void clear()
+  {
+    packageDirs.clear();
+  }
+
+  /**
+   * Class files of a package directory, by source file name
+   */
+  private static final class PackageDir
+  {
+    private final long lastModified;
+    private final Map<String, List<String>> classFilePaths;
+
+    private PackageDir(String dirPath, long lastModified)
+    {
+      this.lastModified = lastModified;
+      classFilePaths = new HashMap<String, List<String>>();
+
+      File dir = new File(dirPath);
+      String[] names = dir.list();
+      if (names == null)
+      {
+        return;
+      }
+
+      // Top level classes tell their source file, nested ones share it
+      Map<String, String> sourceNames = new HashMap<String, String>();
+      for (String name : names)
+      {
+        if ((name.endsWith(CLASS_EXTENSION)) && (name.indexOf('$') == -1))
+        {
+          String sourceName = readSourceName(new File(dir, name));
+          if (sourceName != null)
+          {
+            sourceNames.put(getOuterClassName(name), sourceName);
+          }
+        }
+      }
+
+      for (String name : names)
+      {
+        if (!name.endsWith(CLASS_EXTENSION))
+        {
+          continue;
+        }
+
+        String outerClassName = getOuterClassName(name);
+        String sourceName = sourceNames.get(outerClassName);
+        if (sourceName == null)
+        {
+          sourceName = outerClassName + SOURCE_EXTENSION;
+        }
+
+        List<String> paths = classFilePaths.get(sourceName);
+        if (paths == null)
+        {
+          paths = new ArrayList<String>(1);
+          classFilePaths.put(sourceName, paths);
+        }
+        paths.add(dirPath + '/' + name);
+      }
+    }
+
+    private List<String> getClassFilePaths(String sourceName)
+    {
+      List<String> result = classFilePaths.get(sourceName);
+      return (result == null) ? Collections.<String>emptyList() : result;
+    }
+
+    private static String getOuterClassName(String classFileName)
+    {
+      int i = classFileName.indexOf('$');
+      return classFileName.substring(0,
+        (i == -1) ? classFileName.length() - CLASS_EXTENSION.length() : i);
+    }
+  }
+
+  /**
+   * Reads the name of the source file from the attributes of a class file
+   *
+   * @return null if class file can't be read or has no such attribute
+   */
+  static String readSourceName(File classFile)
+  {
+    DataInputStream in = null;
+    try
+    {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(classFile)));
+      if (in.readInt() != CLASS_MAGIC)
+      {
+        return null;
+      }
+      skip(in, 4);
+
+      // Constant pool, only strings are kept
+      int count = in.readUnsignedShort();
+      String[] strings = new String[count];
+      for (int i = 1; i < count; i++)
+      {
+        int tag = in.readUnsignedByte();
+        switch (tag)
+        {
+          case 1:
+            strings[i] = in.readUTF();
+            break;
+          case 7: case 8: case 16: case 19: case 20:
+            skip(in, 2);
+            break;
+          case 15:
+            skip(in, 3);
+            break;
+          case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+            skip(in, 4);
+            break;
+          case 5: case 6:
+            // Long and double constants take two entries
+            skip(in, 8);
+            i++;
+            break;
+          default:
+            return null;
+        }
+      }
+
+      // Access flags, this class, super class, interfaces, fields and methods
+      skip(in, 6);
+      skip(in, 2 * in.readUnsignedShort());
+      skipMembers(in);
+      skipMembers(in);
+
+      int attributesCount = in.readUnsignedShort();
+      for (int i = 0; i < attributesCount; i++)
+      {
+        int nameIndex = in.readUnsignedShort();
+        int length = in.readInt();
+        if ((nameIndex < count) && (SOURCE_FILE_ATTRIBUTE.equals(strings[nameIndex])))
+        {
+          int valueIndex = in.readUnsignedShort();
+          return (valueIndex < count) ? strings[valueIndex] : null;
+        }
+        skip(in, length);
+      }
+
+      return null;
+    }
+    catch (IOException e)
+    {
+      return null;
+    }
+    finally
+    {
+      if (in != null)
+      {
+        try
+        {
+          in.close();
+        }
+        catch (IOException e)
+        {
+          // ignored
+        }
+      }
+    }
+  }
+
+  private static void skipMembers(DataInputStream in)
+    throws IOException
+  {
+    int membersCount = in.readUnsignedShort();
+    for (int i = 0; i < membersCount; i++)
+    {
+      skip(in, 6);
+      int attributesCount = in.readUnsignedShort();
+      for (int j = 0; j < attributesCount; j++)
+      {
+        skip(in, 2);
+        skip(in, in.readInt());
+      }
+    }
+  }
+
+  private static void skip(DataInputStream in, int length)
+    throws IOException
+  {
+    while (length > 0)
+    {
+      int skipped = in.skipBytes(length);
+      if (skipped <= 0)
+      {
+        // Fails at end of file
+        in.readByte();
+        skipped = 1;
+      }
+      length -= skipped;
+    }
+  }
+}
@@ -5,12 +5,7 @@ import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.roots.CompilerModuleExtension;
 import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.roots.ProjectRootManager;
-import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiClass;
-import com.intellij.psi.PsiJavaFile;
-import com.intellij.psi.PsiManager;
-import org.apache.tools.ant.types.selectors.SelectorUtils;
 import org.sylfra.idea.plugins.remotesynchronizer.RemoteSynchronizerPlugin;
 import org.sylfra.idea.plugins.remotesynchronizer.model.Config;
 import org.sylfra.idea.plugins.remotesynchronizer.model.ConfigListener;
@@ -20,9 +15,9 @@ import org.sylfra.idea.plugins.remotesynchronizer.model.TargetMappings;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provides support for paths management, using current project and plugin
@@ -33,17 +28,72 @@ import java.util.Map;
  * @author <a href="mailto=sylfradev@yahoo.fr">Sylvain FRANCOIS</a>
  */
 public class ConfigPathsManager
+  implements ConfigListener
 {
   private static final int PATTERN_PROJECT_DIR_LENGTH = PathsUtils.PATTERN_PROJECT_DIR.length();
 
   private RemoteSynchronizerPlugin plugin;
   private PathsCacheManager pathsCacheManager;
+  private ClassFilesIndex classFilesIndex;
+  // Mappings and exclusions of each target, compiled from configuration
+  private volatile Map<TargetMappings, CompiledTarget> compiledTargets;
+  // Canonical paths of paths relative to project dir, computed once since
+  // canonicalization accesses the file system
+  private final Map<String, String> expandedPaths;
 
   public ConfigPathsManager(RemoteSynchronizerPlugin plugin)
   {
     this.plugin = plugin;
-    pathsCacheManager = new PathsCacheManager(plugin.getConfig());
+    expandedPaths = new ConcurrentHashMap<String, String>();
+    pathsCacheManager = new PathsCacheManager();
+    classFilesIndex = new ClassFilesIndex();
     plugin.getConfig().addConfigListener(pathsCacheManager);
+    configChanged(plugin.getConfig());
+    plugin.getConfig().addConfigListener(this);
+  }
+
+  /**
+   * Mappings paths and exclusions may have changed, they are compiled again
+   */
+  public void configChanged(Config config)
+  {
+    expandedPaths.clear();
+    Map<TargetMappings, CompiledTarget> targets =
+      new ConcurrentHashMap<TargetMappings, CompiledTarget>();
+    for (TargetMappings targetMappings : config.getTargetMappings())
+    {
+      targets.put(targetMappings, compileTarget(targetMappings));
+    }
+
+    compiledTargets = targets;
+  }
+
+  private CompiledTarget getCompiledTarget(TargetMappings target)
+  {
+    Map<TargetMappings, CompiledTarget> targets = compiledTargets;
+    CompiledTarget result = targets.get(target);
+    if (result == null)
+    {
+      // Target is not registered in configuration yet
+      result = compileTarget(target);
+      targets.put(target, result);
+    }
+
+    return result;
+  }
+
+  private CompiledTarget compileTarget(TargetMappings target)
+  {
+    MappingIndex mappingIndex = new MappingIndex();
+    for (SynchroMapping pathMapping : target.getSynchroMappings())
+    {
+      mappingIndex.add(expandPath(pathMapping.getSrcPath(), true),
+        expandPath(pathMapping.getDestPath(), true));
+    }
+
+    return new CompiledTarget(mappingIndex,
+      new ExclusionMatcher(target.getExcludedCopyPaths()),
+      new ExclusionMatcher(target.getExcludedDeletePaths()));
   }
 
   public RemoteSynchronizerPlugin getPlugin()
@@ -51,6 +101,22 @@ public class ConfigPathsManager
     return plugin;
   }
 
+  /**
+   * Cache of resolved paths, shared by all targets
+   */
+  public PathsCache getPathsCache()
+  {
+    return pathsCacheManager.getCache();
+  }
+
+  /**
+   * Index of compiler output directories
+   */
+  public ClassFilesIndex getClassFilesIndex()
+  {
+    return classFilesIndex;
+  }
+
   public boolean isRelativePath(String path)
   {
     return isRelativePath(
@@ -59,9 +125,10 @@ public class ConfigPathsManager
 
   public boolean isRelativePath(VirtualFile[] roots, String path)
   {
+    NormalizedPath normalizedPath = new NormalizedPath(expandPath(path, true));
     for (VirtualFile root : roots)
     {
-      if (isRelativePath(root.getPath(), path))
+      if (normalizedPath.startsWith(new NormalizedPath(root.getPath())))
       {
         return true;
       }
@@ -72,14 +139,13 @@ public class ConfigPathsManager
 
   public boolean isRelativePath(String root, String path)
   {
-    path = expandPath(path, true);
-    return ((path.toLowerCase().indexOf(root.toLowerCase()) == 0)
-      && ((path.length() == root.length()
-      || (path.charAt(root.length()) == '/'))));
+    return new NormalizedPath(expandPath(path, true))
+      .startsWith(new NormalizedPath(root));
   }
 
   public boolean isOutputPath(String path)
   {
+    NormalizedPath normalizedPath = new NormalizedPath(expandPath(path, true));
     Module[] modules = ModuleManager.getInstance(plugin.getProject()).getModules();
     for (Module module : modules)
     {
@@ -90,8 +156,10 @@ public class ConfigPathsManager
       }
 
       // Use getCompilerOutputXXXPointer since getCompilerOutputXXXPath return NULL when directory does not exist
-      if ((isRelativePath(PathsUtils.toModelPath(cme.getCompilerOutputPointer().getPresentableUrl()), path))
-        || (isRelativePath(PathsUtils.toModelPath(cme.getCompilerOutputForTestsPointer().getPresentableUrl()), path)))
+      if ((normalizedPath.startsWith(new NormalizedPath(
+        PathsUtils.toModelPath(cme.getCompilerOutputPointer().getPresentableUrl()))))
+        || (normalizedPath.startsWith(new NormalizedPath(
+        PathsUtils.toModelPath(cme.getCompilerOutputForTestsPointer().getPresentableUrl())))))
       {
         return true;
       }
@@ -182,6 +250,45 @@ public class ConfigPathsManager
     return PathsUtils.toModelPath(vFile.getPresentableUrl());
   }
 
+  /**
+   * Returns compiler output directories of all modules, for sources and tests.
+   * Directories not created yet are ignored
+   */
+  public List<VirtualFile> getOutputRoots()
+  {
+    return getOutputRoots(ModuleManager.getInstance(plugin.getProject()).getModules());
+  }
+
+  /**
+   * Same as {@link #getOutputRoots()}, for these modules only
+   */
+  public List<VirtualFile> getOutputRoots(Module[] modules)
+  {
+    List<VirtualFile> result = new ArrayList<VirtualFile>();
+    for (Module module : modules)
+    {
+      CompilerModuleExtension extension = CompilerModuleExtension.getInstance(module);
+      if (extension == null)
+      {
+        continue;
+      }
+
+      VirtualFile outputRoot = extension.getCompilerOutputPath();
+      if (outputRoot != null)
+      {
+        result.add(outputRoot);
+      }
+
+      outputRoot = extension.getCompilerOutputPathForTests();
+      if ((outputRoot != null) && (!result.contains(outputRoot)))
+      {
+        result.add(outputRoot);
+      }
+    }
+
+    return result;
+  }
+
   /**
    * Returns classes files path for java source file.
    * Several classes files may correspond to one java file due to inner classes
@@ -199,79 +306,133 @@ public class ConfigPathsManager
       return null;
     }
 
-    PsiManager psiManager = PsiManager.getInstance(plugin.getProject());
-    PsiJavaFile psiJavaFile = (PsiJavaFile) psiManager.findFile(f);
-    assert psiJavaFile != null;
-    PsiClass[] classes = psiJavaFile.getClasses();
+    return getClassFilePaths(outputPath, getPackagePath(f), f.getName());
+  }
 
-    // Each class defined in a source file may contain several inner class...
-    final List<String> result = new ArrayList<String>();
-    for (PsiClass aClass : classes)
+  /**
+   * Same as {@link #getClassFilePaths(VirtualFile)}, once the location of the
+   * source file is known. Neither VFS nor PSI are used, so no read action is
+   * needed
+   *
+   * @param outputPath  model path of the output directory of the source file
+   * @param packagePath package of the source file, with '/' separators
+   * @param sourceName  name of the source file
+   */
+  public List<String> getClassFilePaths(String outputPath, String packagePath,
+    String sourceName)
+  {
+    return classFilesIndex.getClassFilePaths(outputPath, packagePath, sourceName);
+  }
+
+  /**
+   * Returns the directory receiving the class files compiled from the sources
+   * of a source directory, i.e. its package in the output directory of its
+   * module. Must be called within a read action
+   *
+   * @return null if this directory is not in a source root
+   */
+  public String getClassesDirPath(VirtualFile dir)
+  {
+    String outputPath = getOutputPath(dir);
+    if (outputPath == null)
     {
-      final String path = outputPath + '/'
-        + aClass.getQualifiedName().replace('.', '/') + ".class";
+      return null;
+    }
 
-      VirtualFile c = LocalFileSystem.getInstance().findFileByPath(path);
-      result.addAll(getInnerClassFilePaths(c));
-      result.add(path);
+    String packageName = ProjectRootManager.getInstance(plugin.getProject())
+      .getFileIndex().getPackageNameByDirectory(dir);
+    if (packageName == null)
+    {
+      return null;
     }
 
-    return result;
+    return (packageName.length() == 0)
+      ? outputPath
+      : outputPath + '/' + packageName.replace('.', '/');
   }
 
   /**
-   * Return a list with all inner classes paths (anonymous or not) for the
-   * specified class file
+   * Returns the package of a source file, with '/' separators
    */
-  private List<String> getInnerClassFilePaths(VirtualFile c)
+  public String getPackagePath(VirtualFile f)
   {
-    List<String> result = new ArrayList<String>();
+    String packageName = ProjectRootManager.getInstance(plugin.getProject())
+      .getFileIndex().getPackageNameByDirectory(f.getParent());
 
-    if (c != null)
-    {
-      String baseName = c.getNameWithoutExtension() + "$";
-      VirtualFile parent = c.getParent();
-      VirtualFile[] children = parent.getChildren();
-
-      for (VirtualFile child : children)
-      {
-        if (child.getNameWithoutExtension().indexOf(baseName) == 0)
-        {
-          result.add(child.getPath());
-        }
-      }
-    }
-
-    return result;
+    return (packageName == null) ? "" : packageName.replace('.', '/');
   }
 
   public boolean isExcludedFromCopy(TargetMappings target, String path)
   {
-    return isExcluded(target.getExcludedCopyPaths(), path);
+    return getCompiledTarget(target).copyExclusions.isExcluded(path);
+  }
+
+  /**
+   * Same as {@link #isExcludedFromCopy(TargetMappings, String)}, when caller
+   * already knows if path is a directory
+   */
+  public boolean isExcludedFromCopy(TargetMappings target, String path,
+    boolean directory)
+  {
+    return getCompiledTarget(target).copyExclusions.isExcluded(path, directory);
   }
 
   public boolean isExcludedFromDeletion(TargetMappings target, String path)
   {
-    return isExcluded(target.getExcludedDeletePaths(), path);
+    return getCompiledTarget(target).deleteExclusions.isExcluded(path);
   }
 
-  private boolean isExcluded(String[] paths, String path)
+  /**
+   * Are all files contained in this source directory excluded from copy ?
+   */
+  public boolean excludesChildrenFromCopy(TargetMappings target, String dirPath)
+  {
+    return getCompiledTarget(target).copyExclusions.excludesChildren(dirPath);
+  }
+
+  /**
+   * Are all files contained in this remote directory excluded from deletion ?
+   */
+  public boolean excludesChildrenFromDeletion(TargetMappings target,
+    String dirPath)
+  {
+    return getCompiledTarget(target).deleteExclusions.excludesChildren(dirPath);
+  }
+
+  /**
+   * Is this directory the top of a tree excluded by the IDE, i.e. an excluded
+   * folder or an ignored one such as VCS metadata ? Directories containing a
+   * mapping source path or related to an output directory are never
+   * considered as excluded, since they are explicitly synchronized.
+   * <p/>
+   * Must be called within a read action
+   */
+  public boolean isIgnoredDir(TargetMappings target, VirtualFile dir)
   {
-    for (String itPath : paths)
+    ProjectFileIndex fileIndex =
+      ProjectRootManager.getInstance(plugin.getProject()).getFileIndex();
+    VirtualFile parent = dir.getParent();
+    if ((!fileIndex.isIgnored(dir))
+      || ((parent != null) && (fileIndex.isIgnored(parent))))
     {
-      File f = new File(path);
-      if (f.isDirectory())
-      {
-        path += "/";
-      }
+      return false;
+    }
 
-      if (SelectorUtils.match(itPath, path))
+    if (getCompiledTarget(target).mappingIndex.containsMappedPath(dir.getPath()))
+    {
+      return false;
+    }
+
+    for (VirtualFile outputRoot : getOutputRoots())
+    {
+      if ((PathsUtils.isAncestor(dir, outputRoot))
+        || (PathsUtils.isAncestor(outputRoot, dir)))
       {
-        return true;
+        return false;
       }
     }
 
-    return false;
+    return true;
   }
 
   public String getRemotePath(TargetMappings target, String path)
@@ -295,24 +456,42 @@ public class ConfigPathsManager
     return result;
   }
 
-  private String findRemotePath(TargetMappings target,
-    String path)
+  /**
+   * Is this path covered by a mapping of the target ? Exclusions are not
+   * checked, so the file itself is never accessed and may not exist anymore
+   */
+  public boolean isMapped(TargetMappings target, String path)
   {
-    String bestPath = null;
-    String destPath = null;
+    return (findRemotePath(target, path) != null);
+  }
 
-    // Find best included path
-    for (int i = 0; i < target.getSynchroMappings().length; i++)
-    {
-      SynchroMapping pathMapping = target.getSynchroMappings()[i];
-      if (matchesBetter(path, pathMapping.getSrcPath(), bestPath))
-      {
-        bestPath = expandPath(pathMapping.getSrcPath(), true);
-        destPath = expandPath(pathMapping.getDestPath(), true);
-      }
-    }
+  /**
+   * May a file contained in this directory be covered by a mapping of the
+   * target ? Exclusions are not checked
+   */
+  public boolean mayMapChildren(TargetMappings target, String dirPath)
+  {
+    return getCompiledTarget(target).mappingIndex.mayMapChildren(dirPath);
+  }
+
+  /**
+   * Same as {@link #mayMapChildren(TargetMappings, String)}, for a source
+   * directory whose class files may be mapped instead
+   *
+   * @param classesDirPath directory receiving the class files compiled from the
+   *                       sources of this directory, null if it is not a
+   *                       source directory
+   */
+  public boolean mayMapChildren(TargetMappings target, String dirPath,
+    String classesDirPath)
+  {
+    return getCompiledTarget(target).mappingIndex.mayMapChildren(dirPath,
+      classesDirPath);
+  }
 
-    return buildPathFromBestPath(bestPath, path, destPath);
+  private String findRemotePath(TargetMappings target, String path)
+  {
+    return getCompiledTarget(target).mappingIndex.getRemotePath(path);
   }
 
   public String getSrcPath(TargetMappings target, String path)
@@ -328,27 +507,7 @@ public class ConfigPathsManager
       return null;
     }
 
-    String bestPath = null;
-
-    for (int i = 0; i < target.getSynchroMappings().length; i++)
-    {
-      SynchroMapping pathMapping = target.getSynchroMappings()[i];
-      String destPath = expandPath(pathMapping.getDestPath(), true);
-
-      if (path.indexOf(destPath) == 0)
-      {
-        String srcPath = expandPath(pathMapping.getSrcPath(), true);
-        String tmp = buildPathFromBestPath(destPath, path, srcPath);
-
-        // check is this path is not precisely linked
-        if ((path.equals(findRemotePath(target, tmp)))
-          && (matchesBetter(path, destPath, bestPath)))
-        {
-          result = tmp;
-          bestPath = destPath;
-        }
-      }
-    }
+    result = getCompiledTarget(target).mappingIndex.getSrcPath(path);
 
     pathsCacheManager.storeSrcPath(target, path,
       (result == null) ? PathsCacheManager.NULL_PATH : result);
@@ -356,36 +515,6 @@ public class ConfigPathsManager
     return result;
   }
 
-  private String buildPathFromBestPath(String bestPath, String paramPath,
-    String foundPath)
-  {
-    if (bestPath == null)
-      return null;
-
-    // Build absolute src path
-    if (paramPath.toLowerCase().indexOf(bestPath.toLowerCase()) != 0)
-      return null;
-
-    if (foundPath.charAt(foundPath.length() - 1) == '/')
-    {
-      int i = paramPath.lastIndexOf('/');
-      if ((i == -1) && (paramPath.length() > 1))
-        return null;
-      return foundPath + paramPath.substring(i + 1);
-    }
-
-    paramPath = paramPath.substring(bestPath.length());
-
-    if ((!"".equals(paramPath))
-      && (paramPath.charAt(0) != '/')
-      && (foundPath.charAt(foundPath.length() - 1) != '/'))
-    {
-      foundPath += '/';
-    }
-
-    return foundPath + paramPath;
-  }
-
   public String toPresentablePath(String path)
   {
     path = path.replace('/', File.separatorChar);
@@ -397,16 +526,22 @@ public class ConfigPathsManager
   {
     if (path.startsWith(PathsUtils.PATTERN_PROJECT_DIR))
     {
-      path = plugin.getProject().getBaseDir().getPresentableUrl()
-        + path.substring(PATTERN_PROJECT_DIR_LENGTH);
-      try
+      String expandedPath = expandedPaths.get(path);
+      if (expandedPath == null)
       {
-        path = new File(path).getCanonicalPath();
-      }
-      catch (IOException e)
-      {
-        // ignored, can't do more and logging is not relevant
+        expandedPath = plugin.getProject().getBaseDir().getPresentableUrl()
+          + path.substring(PATTERN_PROJECT_DIR_LENGTH);
+        try
+        {
+          expandedPath = new File(expandedPath).getCanonicalPath();
+        }
+        catch (IOException e)
+        {
+          // ignored, can't do more and logging is not relevant
+        }
+        expandedPaths.put(path, expandedPath);
       }
+      path = expandedPath;
     }
 
     if (modelPath)
@@ -418,69 +553,74 @@ public class ConfigPathsManager
   public boolean matchesBetter(String path, String testPath, String bestPath)
   {
     testPath = expandPath(testPath, true);
-    if ((testPath == null) || (path.toLowerCase().indexOf(testPath.toLowerCase()) != 0))
+    if ((testPath == null)
+      || (!new NormalizedPath(path).startsWith(testPath.toLowerCase())))
     {
       return false;
     }
 
-    if (testPath.length() < path.length())
+    return ((bestPath == null) || (testPath.length() > bestPath.length()));
+  }
+
+  private final static class CompiledTarget
+  {
+    private final MappingIndex mappingIndex;
+    private final ExclusionMatcher copyExclusions;
+    private final ExclusionMatcher deleteExclusions;
+
+    private CompiledTarget(MappingIndex mappingIndex,
+      ExclusionMatcher copyExclusions, ExclusionMatcher deleteExclusions)
     {
-      char c = path.charAt(testPath.length());
-      if ((testPath.charAt(testPath.length() - 1) != '/') && (c != '/'))
-      {
-        return false;
-      }
+      this.mappingIndex = mappingIndex;
+      this.copyExclusions = copyExclusions;
+      this.deleteExclusions = deleteExclusions;
     }
-
-    return ((bestPath == null) || (testPath.length() > bestPath.length()));
   }
 
   private final static class PathsCacheManager
     implements ConfigListener
   {
     private final static String NULL_PATH = "<null>";
+    private final static int KIND_REMOTE_PATH = 0;
+    private final static int KIND_SRC_PATH = 1;
 
-    private Map<TargetMappings, Map<String, String>[]> caches;
+    private final PathsCache cache;
 
-    public PathsCacheManager(Config config)
+    public PathsCacheManager()
     {
-      caches = new HashMap<TargetMappings, Map<String, String>[]>();
-      configChanged(config);
+      cache = new PathsCache();
+    }
+
+    public PathsCache getCache()
+    {
+      return cache;
     }
 
     public void configChanged(Config config)
     {
-      caches.clear();
-      for (TargetMappings targetMappings : config.getTargetMappings())
-      {
-        //noinspection unchecked
-        caches.put(targetMappings, new Map[]{
-          new HashMap<String, String>(),
-          new HashMap<String, String>()});
-      }
+      cache.clear();
     }
 
-    public synchronized String getRemotePath(TargetMappings target,
-      String path)
+    public String getRemotePath(TargetMappings target, String path)
     {
-      return (String) (caches.get(target))[0].get(path);
+      return cache.get(target, KIND_REMOTE_PATH, path);
     }
 
-    public synchronized String getSrcPath(TargetMappings target, String path)
+    public String getSrcPath(TargetMappings target, String path)
     {
-      return (String) (caches.get(target))[1].get(path);
+      return cache.get(target, KIND_SRC_PATH, path);
     }
 
-    public synchronized void storeRemotePath(TargetMappings target, String path,
+    public void storeRemotePath(TargetMappings target, String path,
       String remotePath)
     {
-      caches.get(target)[0].put(path, remotePath);
+      cache.put(target, KIND_REMOTE_PATH, path, remotePath);
     }
 
-    public synchronized void storeSrcPath(TargetMappings target, String path,
+    public void storeSrcPath(TargetMappings target, String path,
       String srcPath)
     {
-      caches.get(target)[1].put(path, srcPath);
+      cache.put(target, KIND_SRC_PATH, path, srcPath);
     }
   }
 }
@@ -1,8 +1,10 @@
 package org.sylfra.idea.plugins.remotesynchronizer.utils;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.PersistentStateComponent;
 import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.project.Project;
 import org.sylfra.idea.plugins.remotesynchronizer.model.Config;
 
 /**
@@ -19,10 +21,12 @@ import org.sylfra.idea.plugins.remotesynchronizer.model.Config;
 )
 public class ConfigStateComponent implements PersistentStateComponent<Config>
 {
+  private final Project project;
   private Config config;
 
-  public ConfigStateComponent()
+  public ConfigStateComponent(Project project)
   {
+    this.project = project;
     config = getDefaultSettings();
   }
 
@@ -52,5 +56,20 @@ public class ConfigStateComponent implements PersistentStateComponent<Config>
   public void loadState(Config object)
   {
     config = object;
+
+    // Ids given to targets of older settings must not change at next load
+    if (config.assignTargetIds())
+    {
+      ApplicationManager.getApplication().invokeLater(new Runnable()
+      {
+        public void run()
+        {
+          if (!project.isDisposed())
+          {
+            project.save();
+          }
+        }
+      });
+    }
   }
 }
@@ -0,0 +1,172 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * MD5 hashes of a content, computed while it is copied : hash of the whole
+ * content, and optionally hash of each block of {@link #BLOCK_SIZE} bytes, the
+ * last block being possibly shorter.
+ * <p/>
+ * Hashes then describe the bytes actually written, even if the source changes
+ * meanwhile. Content is given in order, except for chunks copied concurrently :
+ * each one is hashed apart, then {@link #append appended}, and only the block
+ * hashes are known.
+ */
+public final class ContentDigest
+{
+  public static final int BLOCK_SIZE = 1024 * 1024;
+
+  // Length of an hexadecimal hash
+  public static final int HASH_LENGTH = 32;
+
+  private final MessageDigest digest;
+  // Null if blocks are not hashed
+  private final MessageDigest blockDigest;
+  private final StringBuilder blockHashes;
+  private int blockLength;
+  private long length;
+  private boolean finished;
+  // Null if unknown
+  private String hash;
+  // Have chunks been appended ?
+  private boolean chunked;
+
+  /**
+   * @param hashBlocks should each block be hashed too ?
+   */
+  public ContentDigest(boolean hashBlocks)
+  {
+    digest = newDigest();
+    blockDigest = hashBlocks ? newDigest() : null;
+    blockHashes = new StringBuilder();
+  }
+
+  private static MessageDigest newDigest()
+  {
+    try
+    {
+      return MessageDigest.getInstance("MD5");
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      // Every JVM provides MD5
+      throw new IllegalStateException(e.getMessage());
+    }
+  }
+
+  public void update(byte[] content, int offset, int count)
+  {
+    update(ByteBuffer.wrap(content, offset, count));
+  }
+
+  /**
+   * Hashes the remaining bytes of a buffer, without moving its position
+   */
+  public void update(ByteBuffer buffer)
+  {
+    if (finished)
+      throw new IllegalStateException("Digest is finished");
+
+    ByteBuffer remaining = buffer.duplicate();
+    length += remaining.remaining();
+    digest.update(remaining.duplicate());
+    if (blockDigest == null)
+      return;
+
+    // Buffer may overlap several blocks
+    while (remaining.hasRemaining())
+    {
+      int count = Math.min(remaining.remaining(), BLOCK_SIZE - blockLength);
+      ByteBuffer block = remaining.duplicate();
+      block.limit(block.position() + count);
+      blockDigest.update(block);
+      remaining.position(remaining.position() + count);
+      blockLength += count;
+      if (blockLength == BLOCK_SIZE)
+      {
+        blockHashes.append(toHex(blockDigest.digest()));
+        blockLength = 0;
+      }
+    }
+  }
+
+  /**
+   * Appends the digest of the next chunk of the content, hashed apart. Content
+   * hashed so far must end on a block boundary, and chunk must hash its
+   * blocks. Whole content hash becomes unknown
+   */
+  public void append(ContentDigest chunk)
+  {
+    if ((finished) || (length % BLOCK_SIZE != 0))
+      throw new IllegalStateException("Chunk does not start a block");
+
+    blockHashes.append(chunk.getBlockHashes());
+    length += chunk.getLength();
+    chunked = true;
+  }
+
+  /**
+   * No more content will be given : the last block is hashed if shorter
+   */
+  public void finish()
+  {
+    if (finished)
+      return;
+
+    finished = true;
+    hash = chunked ? null : toHex(digest.digest());
+    if ((blockDigest != null) && (blockLength > 0))
+      blockHashes.append(toHex(blockDigest.digest()));
+  }
+
+  /**
+   * Hash of the whole content, once finished
+   *
+   * @return null if unknown, once chunks have been appended
+   */
+  public String getHash()
+  {
+    finish();
+    return hash;
+  }
+
+  /**
+   * Concatenated hashes of each block, once finished. Empty if blocks are not
+   * hashed
+   */
+  public String getBlockHashes()
+  {
+    finish();
+    return blockHashes.toString();
+  }
+
+  /**
+   * Hash of a complete block, or of the last one once finished
+   */
+  public String getBlockHash(int block)
+  {
+    int offset = block * HASH_LENGTH;
+    return blockHashes.substring(offset, offset + HASH_LENGTH);
+  }
+
+  /**
+   * Number of bytes hashed
+   */
+  public long getLength()
+  {
+    return length;
+  }
+
+  public static String toHex(byte[] hash)
+  {
+    StringBuilder result = new StringBuilder(HASH_LENGTH);
+    for (byte b : hash)
+    {
+      result.append(Character.forDigit((b >> 4) & 0xF, 16));
+      result.append(Character.forDigit(b & 0xF, 16));
+    }
+    return result.toString();
+  }
+}
@@ -0,0 +1,259 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Matches paths against a set of exclusion patterns, compiled once.
+ * <p/>
+ * Patterns follow <code>SelectorUtils.match()</code> rules : '*' matches any
+ * sequence of characters, including '/', and '?' matches exactly one
+ * character. Patterns without wildcard are looked up in a hash set, others are
+ * split on '*' and first rejected on their literal prefix, suffix and length.
+ * <p/>
+ * Directories are matched with a trailing '/'. The file system is only
+ * accessed when a pattern may match a directory path, and at most once per
+ * path.
+ * <p/>
+ * A pattern ending with '*' which matches a directory, such as
+ * <code>**&#47;.svn/*</code>, matches any path below it : such directories
+ * don't need to be walked.
+ */
+public class ExclusionMatcher
+{
+  private final Set<String> literals;
+  private final List<Glob> globs;
+  // Globs ending with '*', matching any path below a matching directory
+  private final List<Glob> treeGlobs;
+  // May a pattern match a path ending with '/' ?
+  private final boolean matchesDirectories;
+
+  public ExclusionMatcher(String[] patterns)
+  {
+    literals = new HashSet<String>();
+    globs = new ArrayList<Glob>();
+    treeGlobs = new ArrayList<Glob>();
+
+    boolean dirPatterns = false;
+    for (String pattern : patterns)
+    {
+      if ((pattern.indexOf('*') == -1) && (pattern.indexOf('?') == -1))
+      {
+        literals.add(pattern);
+      }
+      else
+      {
+        Glob glob = new Glob(pattern);
+        globs.add(glob);
+        if (glob.matchesAnySuffix())
+        {
+          treeGlobs.add(glob);
+        }
+      }
+
+      if (pattern.length() > 0)
+      {
+        char last = pattern.charAt(pattern.length() - 1);
+        dirPatterns |= (last == '/') || (last == '*') || (last == '?');
+      }
+    }
+
+    matchesDirectories = dirPatterns;
+  }
+
+  public boolean isEmpty()
+  {
+    return literals.isEmpty() && globs.isEmpty();
+  }
+
+  /**
+   * Is this path excluded ? The file system is checked to know if path is a
+   * directory only when needed
+   */
+  public boolean isExcluded(String path)
+  {
+    if (isEmpty())
+    {
+      return false;
+    }
+
+    boolean fileMatch = matches(path);
+    if ((!fileMatch) && (!matchesDirectories))
+    {
+      return false;
+    }
+
+    return new File(path).isDirectory() ? matches(path + '/') : fileMatch;
+  }
+
+  /**
+   * Is this path excluded ? Caller already knows if path is a directory
+   */
+  public boolean isExcluded(String path, boolean directory)
+  {
+    if (isEmpty())
+    {
+      return false;
+    }
+
+    return directory ? matches(path + '/') : matches(path);
+  }
+
+  /**
+   * Are all paths contained in this directory excluded, at any depth ?
+   *
+   * @param dirPath path of a directory, without trailing '/'
+   */
+  public boolean excludesChildren(String dirPath)
+  {
+    if (treeGlobs.isEmpty())
+    {
+      return false;
+    }
+
+    // If a glob ending with '*' matches "dir/", it matches "dir/" + anything
+    String s = dirPath + '/';
+    for (Glob glob : treeGlobs)
+    {
+      if (glob.matches(s))
+      {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private boolean matches(String s)
+  {
+    if (literals.contains(s))
+    {
+      return true;
+    }
+
+    for (Glob glob : globs)
+    {
+      if (glob.matches(s))
+      {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Pattern split on '*' : a prefix, a suffix, and fragments to be found in
+   * this order between them. Fragments may contain '?'
+   */
+  private static final class Glob
+  {
+    private final String prefix;
+    private final String suffix;
+    private final String[] fragments;
+    private final int minLength;
+    private final boolean hasStar;
+
+    private Glob(String pattern)
+    {
+      int first = pattern.indexOf('*');
+      hasStar = (first != -1);
+      if (!hasStar)
+      {
+        prefix = pattern;
+        suffix = "";
+        fragments = new String[0];
+        minLength = pattern.length();
+        return;
+      }
+
+      int last = pattern.lastIndexOf('*');
+      prefix = pattern.substring(0, first);
+      suffix = pattern.substring(last + 1);
+
+      List<String> list = new ArrayList<String>();
+      int length = prefix.length() + suffix.length();
+      if (last > first)
+      {
+        for (String fragment : pattern.substring(first + 1, last).split("\\*"))
+        {
+          if (fragment.length() > 0)
+          {
+            list.add(fragment);
+            length += fragment.length();
+          }
+        }
+      }
+      fragments = list.toArray(new String[list.size()]);
+      minLength = length;
+    }
+
+    /**
+     * Does a matching string still match with any suffix appended ?
+     */
+    private boolean matchesAnySuffix()
+    {
+      return hasStar && (suffix.length() == 0);
+    }
+
+    private boolean matches(String s)
+    {
+      if (!hasStar)
+      {
+        return (s.length() == minLength) && (matchesAt(prefix, s, 0));
+      }
+
+      if ((s.length() < minLength)
+        || (!matchesAt(prefix, s, 0))
+        || (!matchesAt(suffix, s, s.length() - suffix.length())))
+      {
+        return false;
+      }
+
+      // Leftmost match of each fragment leaves the most room to the next ones
+      int from = prefix.length();
+      int to = s.length() - suffix.length();
+      for (String fragment : fragments)
+      {
+        int i = indexOf(fragment, s, from, to);
+        if (i == -1)
+        {
+          return false;
+        }
+        from = i + fragment.length();
+      }
+
+      return true;
+    }
+
+    private static int indexOf(String fragment, String s, int from, int to)
+    {
+      for (int i = from; i + fragment.length() <= to; i++)
+      {
+        if (matchesAt(fragment, s, i))
+        {
+          return i;
+        }
+      }
+
+      return -1;
+    }
+
+    private static boolean matchesAt(String fragment, String s, int offset)
+    {
+      for (int i = 0; i < fragment.length(); i++)
+      {
+        char c = fragment.charAt(i);
+        if ((c != '?') && (c != s.charAt(offset + i)))
+        {
+          return false;
+        }
+      }
+
+      return true;
+    }
+  }
+}
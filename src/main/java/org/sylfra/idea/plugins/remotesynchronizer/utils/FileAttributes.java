@@ -0,0 +1,214 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Basic attributes of a file, read at once.
+ * <p/>
+ * On network file systems, each call to <code>exists()</code>,
+ * <code>isFile()</code> or <code>lastModified()</code> is a round trip to the
+ * server. When running on Java 7 or later, all attributes are read by a single
+ * call to <code>Files.readAttributes</code>, found by reflection since the
+ * plugin is still built for Java 6. Otherwise, they are read through
+ * <code>java.io.File</code>, with as few calls as possible.
+ * <p/>
+ * The file key, identifying the file on its file system (e.g. its inode), is
+ * only known when read at once.
+ */
+public final class FileAttributes
+{
+  public static final FileAttributes MISSING = new FileAttributes(false, false, 0, 0, null);
+
+  // Null if NIO.2 is not available
+  private static final Method TO_PATH;
+  private static final Method READ_ATTRIBUTES;
+  private static final Method IS_DIRECTORY;
+  private static final Method LAST_MODIFIED_TIME;
+  private static final Method TO_MILLIS;
+  private static final Method SIZE;
+  private static final Method FILE_KEY;
+  private static final Class<?> ATTRIBUTES_CLASS;
+  private static final Object NO_LINK_OPTIONS;
+  private static final Class<?> NO_SUCH_FILE_EXCEPTION_CLASS;
+
+  static
+  {
+    Method toPath = null;
+    Method readAttributes = null;
+    Method isDirectory = null;
+    Method lastModifiedTime = null;
+    Method toMillis = null;
+    Method size = null;
+    Method fileKey = null;
+    Class<?> attributesClass = null;
+    Object noLinkOptions = null;
+    Class<?> noSuchFileExceptionClass = null;
+    try
+    {
+      Class<?> pathClass = Class.forName("java.nio.file.Path");
+      Class<?> filesClass = Class.forName("java.nio.file.Files");
+      Class<?> linkOptionClass = Class.forName("java.nio.file.LinkOption");
+      attributesClass = Class.forName("java.nio.file.attribute.BasicFileAttributes");
+      noLinkOptions = Array.newInstance(linkOptionClass, 0);
+
+      toPath = File.class.getMethod("toPath");
+      readAttributes = filesClass.getMethod("readAttributes", pathClass,
+        Class.class, noLinkOptions.getClass());
+      isDirectory = attributesClass.getMethod("isDirectory");
+      lastModifiedTime = attributesClass.getMethod("lastModifiedTime");
+      toMillis = lastModifiedTime.getReturnType().getMethod("toMillis");
+      size = attributesClass.getMethod("size");
+      fileKey = attributesClass.getMethod("fileKey");
+      noSuchFileExceptionClass = Class.forName("java.nio.file.NoSuchFileException");
+    }
+    catch (Exception e)
+    {
+      // Java 6
+      toPath = null;
+    }
+
+    TO_PATH = toPath;
+    READ_ATTRIBUTES = readAttributes;
+    IS_DIRECTORY = isDirectory;
+    LAST_MODIFIED_TIME = lastModifiedTime;
+    TO_MILLIS = toMillis;
+    SIZE = size;
+    FILE_KEY = fileKey;
+    ATTRIBUTES_CLASS = attributesClass;
+    NO_LINK_OPTIONS = noLinkOptions;
+    NO_SUCH_FILE_EXCEPTION_CLASS = noSuchFileExceptionClass;
+  }
+
+  private final boolean exists;
+  private final boolean directory;
+  private final long lastModified;
+  private final long size;
+  private final Object fileKey;
+
+  private FileAttributes(boolean exists, boolean directory, long lastModified,
+    long size, Object fileKey)
+  {
+    this.exists = exists;
+    this.directory = directory;
+    this.lastModified = lastModified;
+    this.size = size;
+    this.fileKey = fileKey;
+  }
+
+  /**
+   * Reads attributes of a file, following symbolic links
+   *
+   * @return {@link #MISSING} if file does not exist or can't be read
+   */
+  public static FileAttributes read(File f)
+  {
+    if (TO_PATH != null)
+    {
+      try
+      {
+        return readAttributes(f);
+      }
+      catch (InvocationTargetException e)
+      {
+        if (NO_SUCH_FILE_EXCEPTION_CLASS.isInstance(e.getCause()))
+        {
+          return MISSING;
+        }
+        // Other failures are left to java.io
+      }
+      catch (IllegalAccessException e)
+      {
+        // Should not happen with public methods
+      }
+    }
+
+    return readLegacy(f);
+  }
+
+  private static FileAttributes readAttributes(File f)
+    throws InvocationTargetException, IllegalAccessException
+  {
+    Object path = TO_PATH.invoke(f);
+    Object attributes = READ_ATTRIBUTES.invoke(null, path, ATTRIBUTES_CLASS,
+      NO_LINK_OPTIONS);
+
+    return new FileAttributes(true,
+      (Boolean) IS_DIRECTORY.invoke(attributes),
+      (Long) TO_MILLIS.invoke(LAST_MODIFIED_TIME.invoke(attributes)),
+      (Long) SIZE.invoke(attributes),
+      FILE_KEY.invoke(attributes));
+  }
+
+  /**
+   * Reads attributes through <code>java.io.File</code>, a date of 0 meaning
+   * the file is missing unless told otherwise
+   */
+  static FileAttributes readLegacy(File f)
+  {
+    long lastModified = f.lastModified();
+    if ((lastModified == 0) && (!f.exists()))
+    {
+      return MISSING;
+    }
+
+    boolean directory = f.isDirectory();
+    return new FileAttributes(true, directory, lastModified,
+      directory ? 0 : f.length(), null);
+  }
+
+  public boolean exists()
+  {
+    return exists;
+  }
+
+  public boolean isDirectory()
+  {
+    return directory;
+  }
+
+  /**
+   * Is it an existing file which is not a directory ?
+   */
+  public boolean isFile()
+  {
+    return exists && !directory;
+  }
+
+  /**
+   * @return modification date in milliseconds, 0 if file does not exist
+   */
+  public long getLastModified()
+  {
+    return lastModified;
+  }
+
+  /**
+   * @return size in bytes, 0 for directories and missing files
+   */
+  public long getSize()
+  {
+    return directory ? 0 : size;
+  }
+
+  /**
+   * Are both attributes read from the same file, e.g. through two hard links ?
+   *
+   * @return false if unknown, when the file system provides no file key
+   */
+  public boolean isSameFile(FileAttributes other)
+  {
+    return (fileKey != null) && (fileKey.equals(other.fileKey));
+  }
+
+  /**
+   * Does the calling JVM read all attributes at once ?
+   */
+  static boolean isBulkReadSupported()
+  {
+    return TO_PATH != null;
+  }
+}
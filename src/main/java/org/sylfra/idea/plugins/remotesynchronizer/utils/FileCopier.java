@@ -0,0 +1,521 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Copies files using NIO channels.
+ * <p/>
+ * Large files are transfered by the kernel (FileChannel.transferTo) and never
+ * go through the heap. Small files, and files for which the kernel transfer is
+ * not supported, are copied through a direct buffer reused by each thread.
+ * <p/>
+ * Destination keeps the source modification date and is removed if the copy
+ * fails, so no truncated file is left on the target.
+ * <p/>
+ * Very large files may also be split into chunks copied concurrently with
+ * positional reads and writes, into a temporary file of the destination
+ * directory, which atomically replaces the destination once complete.
+ * <p/>
+ * Copied bytes may be hashed while they are written, into a
+ * {@link ContentDigest} : they then go through the buffer, even if large.
+ * <p/>
+ * A destination which may be a hard link to another file is replaced by a new
+ * file, instead of being written in place : the other file is left untouched.
+ */
+public class FileCopier
+{
+  // Under this size, setting up a kernel transfer costs more than a plain copy
+  static final long TRANSFER_THRESHOLD = 256 * 1024;
+
+  // Some platforms fail when transfering too many bytes at once
+  private static final long MAX_TRANSFER_SIZE = 64 * 1024 * 1024;
+
+  private static final int BUFFER_SIZE = 1024 * 1024;
+
+  private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>()
+  {
+    protected ByteBuffer initialValue()
+    {
+      return ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+  };
+
+  /**
+   * Copies source file to destination file, which is created or replaced
+   *
+   * @param srcFile  an existing file
+   * @param destFile destination file, its parent directory must exist
+   * @throws IOException if the copy fails. Destination file has then been
+   *                     removed
+   */
+  public static void copy(File srcFile, File destFile)
+    throws IOException
+  {
+    copy(srcFile, destFile, srcFile.lastModified());
+  }
+
+  /**
+   * Same as {@link #copy(File, File)}, with the source modification date
+   * already known
+   */
+  public static void copy(File srcFile, File destFile, long lastModified)
+    throws IOException
+  {
+    copy(srcFile, destFile, lastModified, null);
+  }
+
+  /**
+   * Same as {@link #copy(File, File, long)}, hashing copied bytes
+   *
+   * @param digest receives copied bytes, may be null
+   */
+  public static void copy(File srcFile, File destFile, long lastModified,
+    ContentDigest digest)
+    throws IOException
+  {
+    FileInputStream in = new FileInputStream(srcFile);
+    try
+    {
+      FileOutputStream out = new FileOutputStream(destFile);
+      boolean copied = false;
+      try
+      {
+        FileChannel inChannel = in.getChannel();
+        FileChannel outChannel = out.getChannel();
+        long size = inChannel.size();
+
+        long position = ((digest != null) || (size < TRANSFER_THRESHOLD))
+          ? 0
+          : transfer(inChannel, outChannel, size);
+        copyBuffered(inChannel, outChannel, position, size, digest);
+
+        copied = true;
+      }
+      finally
+      {
+        if (!closeQuietly(out))
+          copied = false;
+        if (!copied)
+          destFile.delete();
+      }
+    }
+    finally
+    {
+      closeQuietly(in);
+    }
+
+    destFile.setLastModified(lastModified);
+  }
+
+  /**
+   * Same as {@link #copy(File, File, long, ContentDigest)}, copying into a new
+   * file which then replaces destination : a destination sharing its content
+   * with another file, through a hard link, is detached from it instead of
+   * being overwritten
+   *
+   * @throws IOException if the copy fails. Destination file is then left
+   *                     unchanged
+   */
+  public static void copyDetached(File srcFile, File destFile, long lastModified,
+    ContentDigest digest)
+    throws IOException
+  {
+    File partFile = createPartFile(destFile);
+    boolean replaced = false;
+    try
+    {
+      copy(srcFile, partFile, lastModified, digest);
+      FileMover.replace(partFile, destFile);
+      replaced = true;
+    }
+    finally
+    {
+      if (!replaced)
+        partFile.delete();
+    }
+  }
+
+  /**
+   * Writes an already read content to destination file, which is created or
+   * replaced
+   *
+   * @param content      whole content of the source file
+   * @param destFile     destination file, its parent directory must exist
+   * @param lastModified source modification date
+   * @throws IOException if the write fails. Destination file has then been
+   *                     removed
+   */
+  public static void write(byte[] content, File destFile, long lastModified)
+    throws IOException
+  {
+    write(content, destFile, lastModified, null);
+  }
+
+  /**
+   * Same as {@link #write(byte[], File, long)}, hashing written bytes
+   *
+   * @param digest receives written bytes, may be null
+   */
+  public static void write(byte[] content, File destFile, long lastModified,
+    ContentDigest digest)
+    throws IOException
+  {
+    FileOutputStream out = new FileOutputStream(destFile);
+    boolean written = false;
+    try
+    {
+      FileChannel outChannel = out.getChannel();
+      ByteBuffer buffer = ByteBuffer.wrap(content);
+      if (digest != null)
+        digest.update(buffer);
+      while (buffer.hasRemaining())
+        outChannel.write(buffer);
+
+      written = true;
+    }
+    finally
+    {
+      if (!closeQuietly(out))
+        written = false;
+      if (!written)
+        destFile.delete();
+    }
+
+    destFile.setLastModified(lastModified);
+  }
+
+  /**
+   * Same as {@link #write(byte[], File, long, ContentDigest)}, writing a new
+   * file which then replaces destination, as
+   * {@link #copyDetached(File, File, long, ContentDigest)} does
+   */
+  public static void writeDetached(byte[] content, File destFile, long lastModified,
+    ContentDigest digest)
+    throws IOException
+  {
+    File partFile = createPartFile(destFile);
+    boolean replaced = false;
+    try
+    {
+      write(content, partFile, lastModified, digest);
+      FileMover.replace(partFile, destFile);
+      replaced = true;
+    }
+    finally
+    {
+      if (!replaced)
+        partFile.delete();
+    }
+  }
+
+  /**
+   * Creates a new temporary file next to destination. Never an existing file,
+   * which may belong to the user
+   */
+  private static File createPartFile(File destFile)
+    throws IOException
+  {
+    return File.createTempFile(destFile.getName() + "-copy", ".part",
+      destFile.getParentFile());
+  }
+
+  /**
+   * Copies source file to destination file by chunks copied concurrently.
+   * <p/>
+   * Chunks are written into a new temporary file next to destination,
+   * allocated to its final size, which replaces destination once all chunks
+   * are copied, atomically if supported : destination is never seen partially
+   * written.
+   *
+   * @param chunkSize size of each chunk, in bytes
+   * @param executor  copies all chunks but the first one, which is copied by
+   *                  the calling thread
+   * @throws IOException if the copy fails. Destination file is then left
+   *                     unchanged, and temporary file has been removed
+   */
+  public static void copyChunked(File srcFile, File destFile, long lastModified,
+    long chunkSize, ExecutorService executor)
+    throws IOException
+  {
+    copyChunked(srcFile, destFile, lastModified, chunkSize, executor, null);
+  }
+
+  /**
+   * Same as {@link #copyChunked(File, File, long, long, ExecutorService)},
+   * hashing copied bytes. Each chunk is hashed by the thread copying it, so
+   * only block hashes are known : chunk size is then rounded up to a multiple
+   * of {@link ContentDigest#BLOCK_SIZE}
+   *
+   * @param digest receives hashes of copied chunks, may be null
+   */
+  public static void copyChunked(File srcFile, File destFile, long lastModified,
+    long chunkSize, ExecutorService executor, ContentDigest digest)
+    throws IOException
+  {
+    if (digest != null)
+      chunkSize = (chunkSize + ContentDigest.BLOCK_SIZE - 1)
+        / ContentDigest.BLOCK_SIZE * ContentDigest.BLOCK_SIZE;
+
+    File partFile = createPartFile(destFile);
+    boolean replaced = false;
+    try
+    {
+      FileInputStream in = new FileInputStream(srcFile);
+      try
+      {
+        RandomAccessFile out = new RandomAccessFile(partFile, "rw");
+        boolean copied = false;
+        try
+        {
+          FileChannel inChannel = in.getChannel();
+          FileChannel outChannel = out.getChannel();
+          long size = inChannel.size();
+          out.setLength(size);
+
+          ContentDigest[] chunkDigests = copyChunks(inChannel, outChannel, size,
+            chunkSize, executor, digest != null);
+          if (digest != null)
+          {
+            for (ContentDigest chunkDigest : chunkDigests)
+              digest.append(chunkDigest);
+          }
+          copied = true;
+        }
+        finally
+        {
+          if ((!closeQuietly(out)) && (copied))
+            throw new IOException("Can't write " + partFile);
+        }
+      }
+      finally
+      {
+        closeQuietly(in);
+      }
+
+      partFile.setLastModified(lastModified);
+      FileMover.replace(partFile, destFile);
+      replaced = true;
+    }
+    finally
+    {
+      if (!replaced)
+        partFile.delete();
+    }
+  }
+
+  /**
+   * @param hashed should each chunk be hashed ?
+   * @return digests of the chunks in order, null if not hashed
+   */
+  private static ContentDigest[] copyChunks(final FileChannel in,
+    final FileChannel out, long size, long chunkSize, ExecutorService executor,
+    boolean hashed)
+    throws IOException
+  {
+    int chunksCount = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+    final ContentDigest[] digests = hashed ? new ContentDigest[chunksCount] : null;
+    if (hashed)
+    {
+      for (int i = 0; i < chunksCount; i++)
+        digests[i] = new ContentDigest(true);
+    }
+
+    // Chunks not started yet are skipped once the copy has failed
+    final AtomicBoolean failed = new AtomicBoolean();
+    List<Future<Void>> futures = new ArrayList<Future<Void>>();
+    boolean copied = false;
+    try
+    {
+      for (int i = 1; i < chunksCount; i++)
+      {
+        final long chunkStart = i * chunkSize;
+        final long chunkEnd = Math.min(size, chunkStart + chunkSize);
+        final ContentDigest chunkDigest = hashed ? digests[i] : null;
+        futures.add(executor.submit(new Callable<Void>()
+        {
+          public Void call()
+            throws IOException
+          {
+            if (!failed.get())
+              copyChunk(in, out, chunkStart, chunkEnd, chunkDigest);
+            return null;
+          }
+        }));
+      }
+
+      copyChunk(in, out, 0, Math.min(size, chunkSize), hashed ? digests[0] : null);
+      for (Future<Void> future : futures)
+        future.get();
+
+      copied = true;
+      return digests;
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Copy interrupted");
+    }
+    catch (ExecutionException e)
+    {
+      if (e.getCause() instanceof IOException)
+        throw (IOException) e.getCause();
+      throw new IOException(String.valueOf(e.getCause()));
+    }
+    finally
+    {
+      if (!copied)
+      {
+        failed.set(true);
+        awaitChunks(futures);
+      }
+    }
+  }
+
+  /**
+   * Copies a range of bytes through the thread buffer
+   *
+   * @throws IOException if source ends before the end of the range
+   */
+  private static void copyChunk(FileChannel in, FileChannel out, long start,
+    long end, ContentDigest digest)
+    throws IOException
+  {
+    if (copyRange(in, out, start, end, digest) < end)
+      throw new IOException("Source file has been shrunk while being copied");
+  }
+
+  /**
+   * Waits for all chunks to end, so that no chunk is written once the copy
+   * has failed and the temporary file is removed
+   */
+  private static void awaitChunks(List<Future<Void>> futures)
+  {
+    boolean interrupted = false;
+    for (Future<Void> future : futures)
+    {
+      boolean done = false;
+      while (!done)
+      {
+        try
+        {
+          future.get();
+          done = true;
+        }
+        catch (InterruptedException e)
+        {
+          interrupted = true;
+        }
+        catch (ExecutionException e)
+        {
+          // Copy has already failed
+          done = true;
+        }
+      }
+    }
+
+    if (interrupted)
+      Thread.currentThread().interrupt();
+  }
+
+  /**
+   * Transfers bytes using the kernel
+   *
+   * @return position reached. Transfer has stopped before <code>size</code>
+   *         if the kernel could not handle it
+   */
+  private static long transfer(FileChannel in, FileChannel out, long size)
+  {
+    long position = 0;
+    try
+    {
+      while (position < size)
+      {
+        long count = in.transferTo(position,
+          Math.min(MAX_TRANSFER_SIZE, size - position), out);
+        if (count <= 0)
+          break;
+        position += count;
+      }
+    }
+    catch (IOException e)
+    {
+      // Not supported for these channels, remaining bytes will be copied
+      // through a buffer
+    }
+
+    return position;
+  }
+
+  /**
+   * Copies bytes from <code>position</code> through the thread buffer
+   */
+  private static void copyBuffered(FileChannel in, FileChannel out,
+    long position, long size, ContentDigest digest)
+    throws IOException
+  {
+    position = copyRange(in, out, position, size, digest);
+
+    // Source may have been shrunk meanwhile
+    if (out.size() > position)
+      out.truncate(position);
+  }
+
+  /**
+   * Copies bytes from <code>position</code> to <code>end</code> through the
+   * thread buffer, with positional reads and writes
+   *
+   * @param digest receives copied bytes, may be null
+   * @return position reached, before <code>end</code> if source is shorter
+   */
+  private static long copyRange(FileChannel in, FileChannel out,
+    long position, long end, ContentDigest digest)
+    throws IOException
+  {
+    ByteBuffer buffer = BUFFERS.get();
+    while (position < end)
+    {
+      buffer.clear();
+      if (end - position < buffer.capacity())
+        buffer.limit((int) (end - position));
+      int count = in.read(buffer, position);
+      if (count == -1)
+        break;
+
+      buffer.flip();
+      if (digest != null)
+        digest.update(buffer);
+      while (buffer.hasRemaining())
+        position += out.write(buffer, position);
+    }
+
+    return position;
+  }
+
+  private static boolean closeQuietly(Closeable c)
+  {
+    try
+    {
+      c.close();
+      return true;
+    }
+    catch (IOException e)
+    {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Creates hard links, so that a destination on the same file system as its
+ * source shares its content instead of being a copy of it.
+ * <p/>
+ * Links are created by <code>Files.createLink</code>, found by reflection
+ * since the plugin is still built for Java 6. Linking is not supported on
+ * Java 6, nor between two file systems : callers then copy the file.
+ */
+public class FileLinker
+{
+  // Null if NIO.2 is not available
+  private static final Method TO_PATH;
+  private static final Method CREATE_LINK;
+
+  static
+  {
+    Method toPath;
+    Method createLink;
+    try
+    {
+      Class<?> pathClass = Class.forName("java.nio.file.Path");
+      Class<?> filesClass = Class.forName("java.nio.file.Files");
+      toPath = File.class.getMethod("toPath");
+      createLink = filesClass.getMethod("createLink", pathClass, pathClass);
+    }
+    catch (Exception e)
+    {
+      // Java 6
+      toPath = null;
+      createLink = null;
+    }
+
+    TO_PATH = toPath;
+    CREATE_LINK = createLink;
+  }
+
+  /**
+   * Replaces destination file by a hard link to source file
+   *
+   * @param srcFile  an existing file
+   * @param destFile destination file, its parent directory must exist
+   * @return false if the link could not be created, e.g. because both files
+   *         are not on the same file system. Destination file has then been
+   *         removed
+   */
+  public static boolean link(File srcFile, File destFile)
+  {
+    if (!isSupported())
+    {
+      return false;
+    }
+
+    if ((destFile.exists()) && (!destFile.delete()))
+    {
+      return false;
+    }
+
+    try
+    {
+      CREATE_LINK.invoke(null, TO_PATH.invoke(destFile), TO_PATH.invoke(srcFile));
+      return true;
+    }
+    catch (InvocationTargetException e)
+    {
+      // Not supported by the file system, or devices differ
+      return false;
+    }
+    catch (IllegalAccessException e)
+    {
+      // Should not happen with public methods
+      return false;
+    }
+  }
+
+  /**
+   * May the calling JVM create hard links ?
+   */
+  public static boolean isSupported()
+  {
+    return (CREATE_LINK != null);
+  }
+}
@@ -0,0 +1,185 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Replaces a file by another one, e.g. a completely written temporary file.
+ * <p/>
+ * When running on Java 7 or later, files are moved by
+ * <code>Files.move</code>, found by reflection since the plugin is still built
+ * for Java 6 : atomically when the file system allows it, otherwise replacing
+ * the destination. On Java 6, the destination is first renamed to a backup
+ * file, which is restored if the source can't be renamed.
+ * <p/>
+ * In any case, a failed move leaves the destination unchanged.
+ */
+public final class FileMover
+{
+  // Null if NIO.2 is not available
+  private static final Method TO_PATH;
+  private static final Method MOVE;
+  private static final Object ATOMIC_OPTIONS;
+  private static final Object REPLACE_OPTIONS;
+  private static final Class<?> ATOMIC_MOVE_NOT_SUPPORTED_CLASS;
+
+  static
+  {
+    Method toPath = null;
+    Method move = null;
+    Object atomicOptions = null;
+    Object replaceOptions = null;
+    Class<?> atomicMoveNotSupportedClass = null;
+    try
+    {
+      Class<?> pathClass = Class.forName("java.nio.file.Path");
+      Class<?> filesClass = Class.forName("java.nio.file.Files");
+      Class<?> copyOptionClass = Class.forName("java.nio.file.CopyOption");
+      Class<?> standardCopyOptionClass = Class.forName("java.nio.file.StandardCopyOption");
+      Object replaceExisting = standardCopyOptionClass.getField("REPLACE_EXISTING").get(null);
+      Object atomicMove = standardCopyOptionClass.getField("ATOMIC_MOVE").get(null);
+
+      atomicOptions = Array.newInstance(copyOptionClass, 2);
+      Array.set(atomicOptions, 0, atomicMove);
+      Array.set(atomicOptions, 1, replaceExisting);
+      replaceOptions = Array.newInstance(copyOptionClass, 1);
+      Array.set(replaceOptions, 0, replaceExisting);
+
+      toPath = File.class.getMethod("toPath");
+      move = filesClass.getMethod("move", pathClass, pathClass, atomicOptions.getClass());
+      atomicMoveNotSupportedClass =
+        Class.forName("java.nio.file.AtomicMoveNotSupportedException");
+    }
+    catch (Exception e)
+    {
+      // Java 6
+      toPath = null;
+    }
+
+    TO_PATH = toPath;
+    MOVE = (toPath == null) ? null : move;
+    ATOMIC_OPTIONS = atomicOptions;
+    REPLACE_OPTIONS = replaceOptions;
+    ATOMIC_MOVE_NOT_SUPPORTED_CLASS = atomicMoveNotSupportedClass;
+  }
+
+  private FileMover()
+  {
+  }
+
+  /**
+   * Replaces destination file by source file, which no more exists once
+   * moved
+   *
+   * @param srcFile  an existing file, on the same file system as destination
+   * @param destFile destination file, which may exist or not
+   * @throws IOException if the move fails. Destination file is then left
+   *                     unchanged and source file still exists
+   */
+  public static void replace(File srcFile, File destFile)
+    throws IOException
+  {
+    if (MOVE != null)
+    {
+      try
+      {
+        move(srcFile, destFile);
+        return;
+      }
+      catch (IllegalAccessException e)
+      {
+        // Should not happen with public methods
+      }
+    }
+
+    replaceLegacy(srcFile, destFile);
+  }
+
+  private static void move(File srcFile, File destFile)
+    throws IOException, IllegalAccessException
+  {
+    Object srcPath;
+    Object destPath;
+    try
+    {
+      srcPath = TO_PATH.invoke(srcFile);
+      destPath = TO_PATH.invoke(destFile);
+    }
+    catch (InvocationTargetException e)
+    {
+      throw toIOException(e);
+    }
+
+    try
+    {
+      MOVE.invoke(null, srcPath, destPath, ATOMIC_OPTIONS);
+    }
+    catch (InvocationTargetException e)
+    {
+      if (!ATOMIC_MOVE_NOT_SUPPORTED_CLASS.isInstance(e.getCause()))
+      {
+        throw toIOException(e);
+      }
+
+      // File system can't move atomically, destination is still replaced at once
+      try
+      {
+        MOVE.invoke(null, srcPath, destPath, REPLACE_OPTIONS);
+      }
+      catch (InvocationTargetException e2)
+      {
+        throw toIOException(e2);
+      }
+    }
+  }
+
+  /**
+   * Replaces destination through <code>java.io.File</code>, keeping a backup
+   * of destination until source has been renamed
+   */
+  static void replaceLegacy(File srcFile, File destFile)
+    throws IOException
+  {
+    // Some platforms replace existing files
+    if (srcFile.renameTo(destFile))
+    {
+      return;
+    }
+
+    if (!destFile.exists())
+    {
+      throw new IOException("Can't rename " + srcFile + " to " + destFile);
+    }
+
+    File backupFile = File.createTempFile(destFile.getName(), ".bak", destFile.getParentFile());
+    if ((!backupFile.delete()) || (!destFile.renameTo(backupFile)))
+    {
+      backupFile.delete();
+      throw new IOException("Can't replace " + destFile);
+    }
+
+    if (!srcFile.renameTo(destFile))
+    {
+      backupFile.renameTo(destFile);
+      throw new IOException("Can't rename " + srcFile + " to " + destFile);
+    }
+
+    backupFile.delete();
+  }
+
+  private static IOException toIOException(InvocationTargetException e)
+  {
+    Throwable cause = e.getCause();
+    if (cause instanceof IOException)
+    {
+      return (IOException) cause;
+    }
+
+    IOException result = new IOException(String.valueOf(cause));
+    result.initCause(cause);
+    return result;
+  }
+}
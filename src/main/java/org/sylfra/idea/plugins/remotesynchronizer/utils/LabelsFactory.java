@@ -36,7 +36,17 @@ public class LabelsFactory
   public static final String FRAME_INCLUDED_PATH = "FRAME_INCLUDED_PATH";
   public static final String LB_ACTIVE = "LB_ACTIVE";
   public static final String LB_EXECUTE_ON_COMPILE = "LB_EXECUTE_ON_COMPILE";
+  public static final String LB_USE_MANIFEST = "LB_USE_MANIFEST";
+  public static final String LB_LINK_FILES = "LB_LINK_FILES";
+  public static final String LB_CHUNKED_COPY_THRESHOLD = "LB_CHUNKED_COPY_THRESHOLD";
+  public static final String LB_COPY_CHUNK_SIZE = "LB_COPY_CHUNK_SIZE";
+  public static final String LB_INCREMENTAL_SYNC = "LB_INCREMENTAL_SYNC";
   public static final String LB_ALLOW_CONCURRENT_RUNS = "LB_ALLOW_CONCURRENT_RUNS";
+  public static final String LB_COPY_WORKERS_COUNT = "LB_COPY_WORKERS_COUNT";
+  public static final String LB_MAX_CONCURRENT_RUNS = "LB_MAX_CONCURRENT_RUNS";
+  public static final String LB_SYNC_REQUESTS_DELAY = "LB_SYNC_REQUESTS_DELAY";
+  public static final String LB_BLOCK_UPDATE_THRESHOLD = "LB_BLOCK_UPDATE_THRESHOLD";
+  public static final String LB_SHARE_TARGETS_READS = "LB_SHARE_TARGETS_READS";
   public static final String LB_AUTO_POPUP_LOGS = "LB_AUTO_POPUP_LOGS";
   public static final String LB_CLEAR_BEFORE_SYNCHRO = "LB_CLEAR_BEFORE_SYNCHRO";
   public static final String LB_CREATE_MISSING_DIRS = "LB_CREATE_MISSING_DIRS";
@@ -52,6 +62,7 @@ public class LabelsFactory
   public static final String LB_SAVE_BEFORE_COPY = "LB_SAVE_BEFORE_COPY";
   public static final String LB_SHOW_EXCLUDED_PATHS = "LB_SHOW_EXCLUDED_PATHS";
   public static final String LB_SHOW_IDENTICAL_PATHS = "LB_SHOW_IDENTICAL_PATHS";
+  public static final String LB_MAX_CONSOLE_LINES = "LB_MAX_CONSOLE_LINES";
   public static final String LB_SIMULATION_MODE = "LB_SIMULATION_MODE";
   public static final String LB_SHOW_SOURCE_PATHS = "LB_SHOW_SOURCE_PATHS";
   public static final String LB_SRC_PATH = "LB_SRC_PATH";
@@ -78,7 +89,13 @@ public class LabelsFactory
   public static final String MSG_NB_FILE_IGNORED = "MSG_NB_FILE_IGNORED";
   public static final String MSG_NO_FILE_COPIED = "MSG_NO_FILE_COPIED";
   public static final String MSG_PATH_NOT_FOUND = "MSG_PATH_NOT_FOUND";
+  public static final String MSG_PATHS_CACHE_STATS = "MSG_PATHS_CACHE_STATS";
+  public static final String MSG_SCANNING_OBSOLETE_FILES = "MSG_SCANNING_OBSOLETE_FILES";
+  public static final String MSG_BYTES_SAVED = "MSG_BYTES_SAVED";
+  public static final String MSG_DIRS_SKIPPED = "MSG_DIRS_SKIPPED";
+  public static final String MSG_LINES_DROPPED = "MSG_LINES_DROPPED";
   public static final String MSG_CANT_MAKE_DIRS = "MSG_CANT_MAKE_DIRS";
+  public static final String MSG_CANT_REPLACE_DIR = "MSG_CANT_REPLACE_DIR";
   public static final String MSG_PATH_NOT_IN_PROJECT = "MSG_PATH_NOT_IN_PROJECT";
   public static final String MSG_SRC_IN_DEST_PATH = "MSG_SRC_IN_DEST_PATH";
   public static final String MSG_SIMULATION_ACTIVED = "MSG_SIMULATION_ACTIVED";
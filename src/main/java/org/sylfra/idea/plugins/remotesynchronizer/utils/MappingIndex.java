@@ -0,0 +1,289 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index of the synchro mappings of a target, built from expanded model paths.
+ * <p/>
+ * Mappings are grouped by the length of their lower cased source and
+ * destination paths. The best mapping for a path is found by checking its
+ * prefixes which end with a '/' or are followed by a '/', from the longest
+ * one, against the mappings of the same length only : this costs at most one
+ * comparison per directory level of the path in usual configurations, and
+ * allocates nothing but the normalized path.
+ * <p/>
+ * Source paths sorted in tree order also tell whether a directory contains a
+ * mapped source path, so that directories no mapping can reach are not walked.
+ * <p/>
+ * An index is not modified once built, so it may be shared between threads.
+ */
+class MappingIndex
+{
+  // Mappings by length of their lower cased paths, null for unused lengths
+  private final List<List<Mapping>> bySrcLength;
+  private final List<List<Mapping>> byDestLength;
+  private final List<NormalizedPath> srcPaths;
+  // Sorted in tree order, built on first use
+  private volatile NormalizedPath[] sortedSrcPaths;
+
+  public MappingIndex()
+  {
+    bySrcLength = new ArrayList<List<Mapping>>();
+    byDestLength = new ArrayList<List<Mapping>>();
+    srcPaths = new ArrayList<NormalizedPath>();
+  }
+
+  /**
+   * Adds a mapping. When several mappings have the same source path, the
+   * first one added is used
+   *
+   * @param srcPath  expanded source model path
+   * @param destPath expanded destination model path
+   */
+  public void add(String srcPath, String destPath)
+  {
+    if ((srcPath.length() == 0) || (destPath.length() == 0))
+    {
+      return;
+    }
+
+    Mapping mapping = new Mapping(srcPath, destPath);
+
+    List<Mapping> sameLength = getOrCreate(bySrcLength, mapping.foldedSrcPath.length());
+    for (Mapping m : sameLength)
+    {
+      if (m.foldedSrcPath.equals(mapping.foldedSrcPath))
+      {
+        sameLength = null;
+        break;
+      }
+    }
+    if (sameLength != null)
+    {
+      sameLength.add(mapping);
+      srcPaths.add(new NormalizedPath(srcPath));
+      sortedSrcPaths = null;
+    }
+
+    getOrCreate(byDestLength, mapping.foldedDestPath.length()).add(mapping);
+  }
+
+  private static List<Mapping> getOrCreate(List<List<Mapping>> byLength, int length)
+  {
+    while (byLength.size() <= length)
+    {
+      byLength.add(null);
+    }
+
+    List<Mapping> result = byLength.get(length);
+    if (result == null)
+    {
+      result = new ArrayList<Mapping>(1);
+      byLength.set(length, result);
+    }
+
+    return result;
+  }
+
+  private static List<Mapping> get(List<List<Mapping>> byLength, int length)
+  {
+    return (length < byLength.size()) ? byLength.get(length) : null;
+  }
+
+  /**
+   * Returns the remote path of a source path, using its best matching mapping.
+   * Exclusions are not handled here
+   *
+   * @return null if no mapping matches this path
+   */
+  public String getRemotePath(String path)
+  {
+    Mapping mapping = findMapping(new NormalizedPath(path), false);
+
+    return (mapping == null)
+      ? null
+      : buildPath(mapping.srcPath, path, mapping.destPath);
+  }
+
+  /**
+   * May a file contained in this directory, at any depth, be matched by a
+   * mapping ? If not, the directory doesn't need to be walked
+   *
+   * @param dirPath model path of a directory
+   */
+  public boolean mayMapChildren(String dirPath)
+  {
+    NormalizedPath dir = new NormalizedPath(dirPath);
+
+    // A mapping contains this directory
+    return (findMapping(dir, true) != null)
+      || (containsMappedPath(dir));
+  }
+
+  /**
+   * Same as {@link #mayMapChildren(String)}, for a source directory : since
+   * output paths are mapped rather than source paths, it must be walked as
+   * well when the class files compiled from its sources may be matched
+   *
+   * @param classesDirPath model path of the directory receiving the class files
+   *                       of the sources of this directory, null if it is not
+   *                       a source directory
+   */
+  public boolean mayMapChildren(String dirPath, String classesDirPath)
+  {
+    return (mayMapChildren(dirPath))
+      || ((classesDirPath != null) && (mayMapChildren(classesDirPath)));
+  }
+
+  /**
+   * Is a mapping source path contained in this directory, or equal to it ?
+   *
+   * @param dirPath model path of a directory
+   */
+  public boolean containsMappedPath(String dirPath)
+  {
+    return containsMappedPath(new NormalizedPath(dirPath));
+  }
+
+  private boolean containsMappedPath(NormalizedPath dir)
+  {
+    NormalizedPath[] sorted = getSortedSrcPaths();
+
+    // Paths contained in a directory directly follow it in tree order
+    int i = Arrays.binarySearch(sorted, dir, NormalizedPath.TREE_ORDER);
+    if (i >= 0)
+    {
+      return true;
+    }
+
+    i = -i - 1;
+    return (i < sorted.length) && (sorted[i].startsWith(dir));
+  }
+
+  private NormalizedPath[] getSortedSrcPaths()
+  {
+    NormalizedPath[] result = sortedSrcPaths;
+    if (result == null)
+    {
+      result = srcPaths.toArray(new NormalizedPath[srcPaths.size()]);
+      Arrays.sort(result, NormalizedPath.TREE_ORDER);
+      sortedSrcPaths = result;
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the mapping matching the longest prefix of a lower cased path
+   *
+   * @param dir if true, path is matched as if it ended with a '/'
+   */
+  private Mapping findMapping(NormalizedPath path, boolean dir)
+  {
+    String foldedPath = path.getFoldedPath();
+    int pathLength = foldedPath.length();
+    for (int length = dir ? pathLength + 1 : pathLength; length > 0;
+         length = (length > pathLength) ? pathLength : path.getPrefixLength(length))
+    {
+      List<Mapping> mappings = get(bySrcLength, length);
+      if (mappings != null)
+      {
+        for (Mapping mapping : mappings)
+        {
+          boolean matches = (length <= pathLength)
+            ? foldedPath.startsWith(mapping.foldedSrcPath)
+            : ((mapping.foldedSrcPath.startsWith(foldedPath))
+            && (mapping.foldedSrcPath.charAt(pathLength) == '/'));
+          if (matches)
+          {
+            return mapping;
+          }
+        }
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the source path of a remote path, using the best matching mapping
+   * which would copy this source path to the same remote path
+   *
+   * @return null if no mapping matches this path
+   */
+  public String getSrcPath(String path)
+  {
+    NormalizedPath normalizedPath = new NormalizedPath(path);
+    String foldedPath = normalizedPath.getFoldedPath();
+    for (int length = foldedPath.length(); length > 0;
+         length = normalizedPath.getPrefixLength(length))
+    {
+      List<Mapping> mappings = get(byDestLength, length);
+      if (mappings != null)
+      {
+        for (Mapping mapping : mappings)
+        {
+          if ((!foldedPath.startsWith(mapping.foldedDestPath))
+            || (!path.startsWith(mapping.destPath)))
+          {
+            continue;
+          }
+
+          // check is this path is not precisely linked
+          String result = buildPath(mapping.destPath, path, mapping.srcPath);
+          if ((result != null) && (path.equals(getRemotePath(result))))
+          {
+            return result;
+          }
+        }
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Replaces <code>bestPath</code> prefix of <code>paramPath</code> with
+   * <code>foundPath</code>. If <code>foundPath</code> ends with a '/', it is
+   * a directory receiving the file
+   */
+  static String buildPath(String bestPath, String paramPath, String foundPath)
+  {
+    if (foundPath.charAt(foundPath.length() - 1) == '/')
+    {
+      int i = paramPath.lastIndexOf('/');
+      if ((i == -1) && (paramPath.length() > 1))
+        return null;
+      return foundPath + paramPath.substring(i + 1);
+    }
+
+    paramPath = paramPath.substring(bestPath.length());
+
+    if ((!"".equals(paramPath))
+      && (paramPath.charAt(0) != '/')
+      && (foundPath.charAt(foundPath.length() - 1) != '/'))
+    {
+      foundPath += '/';
+    }
+
+    return foundPath + paramPath;
+  }
+
+  private static final class Mapping
+  {
+    private final String srcPath;
+    private final String destPath;
+    private final String foldedSrcPath;
+    private final String foldedDestPath;
+
+    private Mapping(String srcPath, String destPath)
+    {
+      this.srcPath = srcPath;
+      this.destPath = destPath;
+      foldedSrcPath = srcPath.toLowerCase();
+      foldedDestPath = destPath.toLowerCase();
+    }
+  }
+}
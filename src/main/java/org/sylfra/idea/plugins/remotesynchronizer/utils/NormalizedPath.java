@@ -0,0 +1,156 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import java.util.Comparator;
+
+/**
+ * Model path with its case folded form, computed once.
+ * <p/>
+ * Paths are compared ignoring case, as mappings are. Comparisons work on the
+ * folded forms and on segment boundaries, without allocating any string, so a
+ * path may be normalized once and compared many times.
+ * <p/>
+ * A trailing '/' is dropped, except for a root path.
+ */
+public final class NormalizedPath
+{
+  /**
+   * Orders folded paths so that '/' sorts before any other character : a path
+   * is directly followed by the paths it contains, e.g. "src", "src/a",
+   * "src-gen"
+   */
+  public static final Comparator<NormalizedPath> TREE_ORDER = new Comparator<NormalizedPath>()
+  {
+    public int compare(NormalizedPath p1, NormalizedPath p2)
+    {
+      String s1 = p1.folded;
+      String s2 = p2.folded;
+      int length = Math.min(s1.length(), s2.length());
+      for (int i = 0; i < length; i++)
+      {
+        char c1 = s1.charAt(i);
+        char c2 = s2.charAt(i);
+        if (c1 != c2)
+        {
+          return ((c1 == '/') ? 0 : c1 + 1) - ((c2 == '/') ? 0 : c2 + 1);
+        }
+      }
+
+      return s1.length() - s2.length();
+    }
+  };
+
+  private final String path;
+  private final String folded;
+
+  public NormalizedPath(String path)
+  {
+    if ((path.length() > 1) && (path.charAt(path.length() - 1) == '/'))
+    {
+      path = path.substring(0, path.length() - 1);
+    }
+
+    this.path = path;
+    // Same instance if already lower cased
+    folded = path.toLowerCase();
+  }
+
+  /**
+   * Model path, with its original case
+   */
+  public String getPath()
+  {
+    return path;
+  }
+
+  /**
+   * Lower cased model path
+   */
+  public String getFoldedPath()
+  {
+    return folded;
+  }
+
+  public int length()
+  {
+    return path.length();
+  }
+
+  /**
+   * Is this path equal to <code>ancestor</code>, or contained in it ?
+   */
+  public boolean startsWith(NormalizedPath ancestor)
+  {
+    return startsWith(ancestor.folded);
+  }
+
+  /**
+   * Is this path equal to a lower cased path, or contained in it ? The lower
+   * cased path may end with a '/'
+   */
+  public boolean startsWith(String foldedPath)
+  {
+    int length = foldedPath.length();
+    return (folded.startsWith(foldedPath))
+      && ((length == folded.length())
+      || (folded.charAt(length) == '/')
+      || ((length > 0) && (foldedPath.charAt(length - 1) == '/')));
+  }
+
+  /**
+   * Returns the path of this path relative to <code>ancestor</code>, with its
+   * original case
+   *
+   * @return null if this path is not contained in <code>ancestor</code>, an
+   *         empty string if they are equal
+   */
+  public String getRelativePath(NormalizedPath ancestor)
+  {
+    if (!startsWith(ancestor))
+    {
+      return null;
+    }
+
+    int length = ancestor.length();
+    if (length == path.length())
+    {
+      return "";
+    }
+
+    return path.substring((path.charAt(length) == '/') ? length + 1 : length);
+  }
+
+  /**
+   * Returns the length of the longest prefix shorter than <code>length</code>
+   * ending on a segment boundary, i.e. ending with a '/' or followed by a '/'
+   *
+   * @return -1 if there is no such prefix
+   */
+  public int getPrefixLength(int length)
+  {
+    for (int i = length - 1; i > 0; i--)
+    {
+      if ((folded.charAt(i - 1) == '/') || (folded.charAt(i) == '/'))
+      {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  public boolean equals(Object o)
+  {
+    return (this == o)
+      || ((o instanceof NormalizedPath) && (folded.equals(((NormalizedPath) o).folded)));
+  }
+
+  public int hashCode()
+  {
+    return folded.hashCode();
+  }
+
+  public String toString()
+  {
+    return path;
+  }
+}
@@ -0,0 +1,82 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Set of paths, telling whether a path is one of them or is contained in one
+ * of them. Case is ignored, as in mappings.
+ * <p/>
+ * Paths are normalized and sorted in tree order once, paths contained in
+ * another one being dropped. The only candidate for a path is then the
+ * greatest one not greater than it, found by a binary search : the cost does
+ * not depend on the number of paths.
+ * <p/>
+ * A set is not modified once built, so it may be shared between threads.
+ */
+public class PathPrefixSet
+{
+  private final NormalizedPath[] prefixes;
+
+  /**
+   * @param paths model paths
+   */
+  public PathPrefixSet(String[] paths)
+  {
+    NormalizedPath[] sorted = new NormalizedPath[paths.length];
+    for (int i = 0; i < paths.length; i++)
+    {
+      sorted[i] = new NormalizedPath(paths[i]);
+    }
+    Arrays.sort(sorted, NormalizedPath.TREE_ORDER);
+
+    // A path follows the paths containing it
+    List<NormalizedPath> list = new ArrayList<NormalizedPath>(sorted.length);
+    for (NormalizedPath prefix : sorted)
+    {
+      if ((list.isEmpty()) || (!prefix.startsWith(list.get(list.size() - 1))))
+      {
+        list.add(prefix);
+      }
+    }
+    prefixes = list.toArray(new NormalizedPath[list.size()]);
+  }
+
+  public boolean isEmpty()
+  {
+    return (prefixes.length == 0);
+  }
+
+  /**
+   * Number of paths kept, once contained paths have been dropped
+   */
+  public int size()
+  {
+    return prefixes.length;
+  }
+
+  /**
+   * Is this path one of the paths of the set, or contained in one of them ?
+   */
+  public boolean contains(String path)
+  {
+    return (prefixes.length > 0) && (contains(new NormalizedPath(path)));
+  }
+
+  /**
+   * Same as {@link #contains(String)}, for an already normalized path
+   */
+  public boolean contains(NormalizedPath path)
+  {
+    int i = Arrays.binarySearch(prefixes, path, NormalizedPath.TREE_ORDER);
+    if (i >= 0)
+    {
+      return true;
+    }
+
+    // Insertion point is after the greatest prefix lower than path
+    i = -i - 2;
+    return (i >= 0) && (path.startsWith(prefixes[i]));
+  }
+}
@@ -0,0 +1,278 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of resolved paths.
+ * <p/>
+ * Entries are spread over segments, each one locked separately and evicting
+ * its least recently used entries, so parallel workers seldom wait for each
+ * other. Keys don't keep absolute paths : they reference their parent
+ * directory, shared by all entries of the same directory, and their name.
+ * <p/>
+ * Values are stored for an owner (a target) and a kind of resolution, so a
+ * single cache bounds memory used by all targets.
+ */
+public class PathsCache
+{
+  private static final int SEGMENTS_COUNT = 16;
+
+  // Rough memory used by an entry, and part of the heap the cache may use
+  private static final int ENTRY_SIZE = 256;
+  private static final int HEAP_RATIO = 64;
+  private static final int MIN_CAPACITY = 10000;
+  private static final int MAX_CAPACITY = 500000;
+
+  private final Segment[] segments;
+  private final int capacity;
+  private final ConcurrentMap<String, String> parents;
+  private final AtomicLong hitCount;
+  private final AtomicLong missCount;
+  private final AtomicLong evictionCount;
+
+  public PathsCache()
+  {
+    this(getDefaultCapacity());
+  }
+
+  public PathsCache(int capacity)
+  {
+    this.capacity = capacity;
+    parents = new ConcurrentHashMap<String, String>();
+    hitCount = new AtomicLong();
+    missCount = new AtomicLong();
+    evictionCount = new AtomicLong();
+
+    int segmentCapacity = Math.max(1, capacity / SEGMENTS_COUNT);
+    segments = new Segment[SEGMENTS_COUNT];
+    for (int i = 0; i < SEGMENTS_COUNT; i++)
+    {
+      segments[i] = new Segment(segmentCapacity, evictionCount);
+    }
+  }
+
+  /**
+   * Capacity depends on the maximum heap size
+   */
+  private static int getDefaultCapacity()
+  {
+    long capacity = Runtime.getRuntime().maxMemory() / HEAP_RATIO / ENTRY_SIZE;
+    return (int) Math.max(MIN_CAPACITY, Math.min(MAX_CAPACITY, capacity));
+  }
+
+  public String get(Object owner, int kind, String path)
+  {
+    PathKey key = new PathKey(owner, kind, path);
+    String result = getSegment(key).get(key);
+    if (result == null)
+      missCount.incrementAndGet();
+    else
+      hitCount.incrementAndGet();
+
+    return result;
+  }
+
+  public void put(Object owner, int kind, String path, String value)
+  {
+    PathKey key = new PathKey(owner, kind, path, shareParent(path));
+    getSegment(key).put(key, value);
+  }
+
+  public void clear()
+  {
+    for (Segment segment : segments)
+    {
+      segment.clear();
+    }
+    parents.clear();
+  }
+
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  public int getSize()
+  {
+    int result = 0;
+    for (Segment segment : segments)
+    {
+      result += segment.size();
+    }
+
+    return result;
+  }
+
+  public long getHitCount()
+  {
+    return hitCount.get();
+  }
+
+  public long getMissCount()
+  {
+    return missCount.get();
+  }
+
+  public long getEvictionCount()
+  {
+    return evictionCount.get();
+  }
+
+  private Segment getSegment(PathKey key)
+  {
+    int h = key.hash;
+    h ^= (h >>> 16);
+    return segments[(h ^ (h >>> 8)) & (SEGMENTS_COUNT - 1)];
+  }
+
+  /**
+   * Returns the parent path of this path, using the instance already used by
+   * other entries if any. Returns null if path has no parent
+   */
+  private String shareParent(String path)
+  {
+    int i = path.lastIndexOf('/');
+    if (i == -1)
+      return null;
+
+    // Copied, so the key doesn't retain the whole path on older JVMs
+    String parent = new String(path.substring(0, i));
+    String result = parents.putIfAbsent(parent, parent);
+    if (result == null)
+    {
+      // Parents are only shared to save memory, they may be forgotten
+      if (parents.size() > capacity)
+        parents.clear();
+      result = parent;
+    }
+
+    return result;
+  }
+
+  /**
+   * LRU map, locked by itself
+   */
+  private static final class Segment extends LinkedHashMap<PathKey, String>
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+    private final AtomicLong evictionCount;
+
+    private Segment(int capacity, AtomicLong evictionCount)
+    {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+      this.evictionCount = evictionCount;
+    }
+
+    public synchronized String get(Object key)
+    {
+      return super.get(key);
+    }
+
+    public synchronized String put(PathKey key, String value)
+    {
+      return super.put(key, value);
+    }
+
+    public synchronized void clear()
+    {
+      super.clear();
+    }
+
+    public synchronized int size()
+    {
+      return super.size();
+    }
+
+    protected boolean removeEldestEntry(Map.Entry<PathKey, String> eldest)
+    {
+      if (size() <= capacity)
+        return false;
+
+      evictionCount.incrementAndGet();
+      return true;
+    }
+  }
+
+  /**
+   * Key made of a parent path and a name, or of a whole path when it has no
+   * parent or when the key is only used for a lookup. Both forms of the same
+   * path are equal
+   */
+  private static final class PathKey
+  {
+    private final Object owner;
+    private final int kind;
+    private final String parent;
+    private final String name;
+    private final int hash;
+
+    private PathKey(Object owner, int kind, String path)
+    {
+      this.owner = owner;
+      this.kind = kind;
+      parent = null;
+      name = path;
+      hash = hashCode(owner, kind, path);
+    }
+
+    private PathKey(Object owner, int kind, String path, String parent)
+    {
+      this.owner = owner;
+      this.kind = kind;
+      this.parent = parent;
+      name = (parent == null) ? path : new String(path.substring(parent.length() + 1));
+      hash = hashCode(owner, kind, path);
+    }
+
+    private static int hashCode(Object owner, int kind, String path)
+    {
+      return (System.identityHashCode(owner) * 31 + kind) * 31 + path.hashCode();
+    }
+
+    public int hashCode()
+    {
+      return hash;
+    }
+
+    public boolean equals(Object o)
+    {
+      if (this == o)
+        return true;
+      if (!(o instanceof PathKey))
+        return false;
+
+      PathKey other = (PathKey) o;
+      if ((hash != other.hash) || (owner != other.owner) || (kind != other.kind))
+        return false;
+
+      if (parent == null)
+        return other.matches(name);
+      if (other.parent == null)
+        return matches(other.name);
+
+      return parent.equals(other.parent) && name.equals(other.name);
+    }
+
+    /**
+     * Does this key stand for this whole path ?
+     */
+    private boolean matches(String path)
+    {
+      if (parent == null)
+        return name.equals(path);
+
+      int parentLength = parent.length();
+      return (path.length() == parentLength + 1 + name.length())
+        && (path.charAt(parentLength) == '/')
+        && (path.startsWith(parent))
+        && (path.startsWith(name, parentLength + 1));
+    }
+  }
+}
@@ -102,13 +102,11 @@ public class PathsUtils
 
   private static String getRelativePath(String path, String basePath)
   {
-    path = toModelPath(path);
-    basePath = toModelPath(basePath);
-    if (!basePath.endsWith("/"))
-      basePath += "/";
+    String result = new NormalizedPath(toModelPath(path))
+      .getRelativePath(new NormalizedPath(toModelPath(basePath)));
 
-    int pos = path.indexOf(basePath);
-    return (pos == -1) ? null : path.substring(basePath.length());
+    // Base path itself is expressed from its parent
+    return ((result == null) || (result.length() == 0)) ? null : result;
   }
 
   public static String replaceJavaExtensionByClass(String path)
@@ -9,7 +9,8 @@ import org.sylfra.idea.plugins.remotesynchronizer.ui.ThreadConsole;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.*;
+import java.io.File;
+import java.io.FileFilter;
 
 /**
  * Misc utility methods
@@ -43,29 +44,6 @@ public class Utils
     return d;
   }
 
-  public static void copyFile(File srcFile, File destFile)
-    throws IOException
-  {
-    if (!srcFile.exists())
-      return;
-
-    FileInputStream in = new FileInputStream(srcFile);
-    FileOutputStream out = new FileOutputStream(destFile);
-    byte buffer[] = new byte[8192];
-    int count = 0;
-    do
-    {
-      out.write(buffer, 0, count);
-      count = in.read(buffer, 0, buffer.length);
-    }
-    while (count != -1);
-
-    in.close();
-    out.close();
-
-    destFile.setLastModified(srcFile.lastModified());
-  }
-
   public static RemoteSynchronizerPlugin getPlugin(AnActionEvent e)
   {
     Project project = DataKeys.PROJECT.getData(e.getDataContext());
@@ -0,0 +1,97 @@
+package org.sylfra.idea.plugins.remotesynchronizer;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Base class of tests working on temporary files, removed after each test
+ */
+public abstract class TempFilesTestCase extends TestCase
+{
+  private final List<File> tempFiles = new ArrayList<File>();
+
+  protected void tearDown()
+    throws Exception
+  {
+    for (File f : tempFiles)
+    {
+      f.delete();
+    }
+    tempFiles.clear();
+  }
+
+  /**
+   * Creates an empty temporary file, removed after the test
+   */
+  protected File createTempFile(String prefix)
+    throws IOException
+  {
+    return deleteAfterTest(File.createTempFile(prefix, ".tmp"));
+  }
+
+  /**
+   * Removes a file after the test, if it exists
+   */
+  protected File deleteAfterTest(File f)
+  {
+    tempFiles.add(f);
+    return f;
+  }
+
+  /**
+   * Returns random bytes, always the same ones for a size
+   */
+  protected static byte[] random(int size)
+  {
+    byte[] result = new byte[size];
+    new Random(size).nextBytes(result);
+    return result;
+  }
+
+  protected static void write(File f, String content)
+    throws IOException
+  {
+    write(f, content.getBytes("UTF-8"));
+  }
+
+  protected static void write(File f, byte[] content)
+    throws IOException
+  {
+    FileOutputStream out = new FileOutputStream(f);
+    try
+    {
+      out.write(content);
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+
+  protected static byte[] read(File f)
+    throws IOException
+  {
+    byte[] result = new byte[(int) f.length()];
+    FileInputStream in = new FileInputStream(f);
+    try
+    {
+      int offset = 0;
+      while (offset < result.length)
+      {
+        offset += in.read(result, offset, result.length - offset);
+      }
+    }
+    finally
+    {
+      in.close();
+    }
+    return result;
+  }
+}
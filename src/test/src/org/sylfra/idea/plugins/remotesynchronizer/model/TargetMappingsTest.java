@@ -0,0 +1,38 @@
+package org.sylfra.idea.plugins.remotesynchronizer.model;
+
+import junit.framework.TestCase;
+
+public class TargetMappingsTest extends TestCase
+{
+  public void testNewTargetsHaveDistinctIds()
+  {
+    String id = new TargetMappings().getId();
+
+    assertNotNull(id);
+    assertFalse(id.equals(new TargetMappings().getId()));
+  }
+
+  public void testIdIsKept()
+  {
+    TargetMappings target = new TargetMappings();
+    String id = target.getId();
+
+    assertFalse(target.assignId());
+    assertEquals(id, target.getId());
+  }
+
+  public void testLegacyTargetIdIsKeptOnceReloaded()
+  {
+    // Loaded from settings saved without id
+    TargetMappings legacy = new TargetMappings();
+    assertTrue(legacy.assignId());
+    String id = legacy.getId();
+    assertNotNull(id);
+
+    // Loaded again from settings saved with this id
+    TargetMappings reloaded = new TargetMappings();
+    reloaded.setId(id);
+    assertFalse(reloaded.assignId());
+    assertEquals(id, reloaded.getId());
+  }
+}
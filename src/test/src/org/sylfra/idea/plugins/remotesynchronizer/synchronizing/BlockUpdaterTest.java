@@ -0,0 +1,92 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+import org.sylfra.idea.plugins.remotesynchronizer.TempFilesTestCase;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.ContentDigest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class BlockUpdaterTest extends TempFilesTestCase
+{
+  private static final int BLOCK_SIZE = SynchroManifest.BLOCK_SIZE;
+
+  private File srcFile;
+  private File destFile;
+
+  protected void setUp()
+    throws Exception
+  {
+    srcFile = createTempFile("updater-src");
+    destFile = createTempFile("updater-dest");
+  }
+
+  public void testOnlyChangedBlockIsWritten()
+    throws IOException
+  {
+    byte[] content = random(BLOCK_SIZE * 2 + 1000);
+    String blockHashes = copy(content);
+
+    content[BLOCK_SIZE + 10]++;
+    checkUpdate(content, blockHashes, BLOCK_SIZE + 1000);
+  }
+
+  public void testUnchangedFileIsNotWritten()
+    throws IOException
+  {
+    byte[] content = random(BLOCK_SIZE + 1000);
+    String blockHashes = copy(content);
+
+    checkUpdate(content, blockHashes, content.length);
+  }
+
+  public void testGrownFile()
+    throws IOException
+  {
+    byte[] content = random(BLOCK_SIZE * 2 + 1000);
+    String blockHashes = copy(Arrays.copyOf(content, BLOCK_SIZE + 500));
+
+    // Last block was shorter, it is written again
+    checkUpdate(content, blockHashes, BLOCK_SIZE);
+  }
+
+  public void testShrunkFile()
+    throws IOException
+  {
+    byte[] content = random(BLOCK_SIZE * 2 + 1000);
+    String blockHashes = copy(content);
+
+    checkUpdate(Arrays.copyOf(content, BLOCK_SIZE), blockHashes, BLOCK_SIZE);
+  }
+
+  /**
+   * Writes content to source and destination, and returns its block hashes
+   */
+  private String copy(byte[] content)
+    throws IOException
+  {
+    write(srcFile, content);
+    write(destFile, content);
+
+    StringBuilder blockHashes = new StringBuilder();
+    assertNotNull(SynchroManifest.computeHash(srcFile, blockHashes));
+    return blockHashes.toString();
+  }
+
+  private void checkUpdate(byte[] content, String blockHashes, long expectedSaved)
+    throws IOException
+  {
+    write(srcFile, content);
+    ContentDigest digest = new ContentDigest(true);
+    assertEquals(expectedSaved,
+      BlockUpdater.update(srcFile, destFile, 1000000000000L, blockHashes, digest));
+    assertTrue(Arrays.equals(content, read(destFile)));
+    assertEquals(1000000000000L, destFile.lastModified());
+
+    // Digest describes the new content
+    StringBuilder newBlockHashes = new StringBuilder();
+    assertEquals(SynchroManifest.computeHash(destFile, newBlockHashes), digest.getHash());
+    assertEquals(newBlockHashes.toString(), digest.getBlockHashes());
+    assertEquals(content.length, digest.getLength());
+  }
+}
@@ -0,0 +1,48 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+import junit.framework.TestCase;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.PathPrefixSet;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+public class CompileSelectionTest extends TestCase
+{
+  private static final String OUTPUT_ROOT = "c:/project/out/production/web";
+
+  public void testGeneratedFilesOfOutputRootsAreNotSelected()
+  {
+    Set<String> paths = CompileSelection.getPaths(Collections.singleton(OUTPUT_ROOT),
+      Arrays.asList(OUTPUT_ROOT + "/org/A.class", "c:/project/web/generated.xml"));
+
+    assertEquals(Arrays.asList(OUTPUT_ROOT, "c:/project/web/generated.xml"),
+      Arrays.asList(paths.toArray()));
+  }
+
+  public void testClassDeletedBetweenCompilationsIsSelected()
+  {
+    // First compilation generates both classes
+    Set<String> paths = CompileSelection.getPaths(Collections.singleton(OUTPUT_ROOT),
+      Arrays.asList(OUTPUT_ROOT + "/org/A.class", OUTPUT_ROOT + "/org/B.class"));
+    assertTrue(toSet(paths).contains(OUTPUT_ROOT + "/org/B.class"));
+
+    // B source has been deleted, its remote copy must be found obsolete
+    paths = CompileSelection.getPaths(Collections.singleton(OUTPUT_ROOT),
+      Collections.singleton(OUTPUT_ROOT + "/org/A.class"));
+    assertTrue(toSet(paths).contains(OUTPUT_ROOT + "/org/B.class"));
+  }
+
+  public void testNoOutputRoot()
+  {
+    Set<String> paths = CompileSelection.getPaths(Collections.<String>emptySet(),
+      Collections.singleton(OUTPUT_ROOT + "/org/A.class"));
+
+    assertEquals(Collections.singleton(OUTPUT_ROOT + "/org/A.class"), paths);
+  }
+
+  private static PathPrefixSet toSet(Set<String> paths)
+  {
+    return new PathPrefixSet(paths.toArray(new String[paths.size()]));
+  }
+}
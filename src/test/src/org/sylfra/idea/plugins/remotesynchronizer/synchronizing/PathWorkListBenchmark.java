@@ -0,0 +1,81 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+import java.util.Stack;
+
+/**
+ * Compares the time needed to build a work list from synthetic paths, using
+ * {@link PathWorkList} and the former <code>Stack.contains()</code> check.
+ * <p/>
+ * Each path is added twice, as it happens for class files of a selected source
+ * file. Former implementation is only measured up to 100k paths, since it
+ * would take hours with 1M paths.
+ */
+public class PathWorkListBenchmark
+{
+  private static final int[] SIZES = {10000, 100000, 1000000};
+  private static final int MAX_STACK_SIZE = 100000;
+  private static final int WARMUP_RUNS = 3;
+
+  public static void main(String[] args)
+  {
+    for (int size : SIZES)
+    {
+      String[] paths = createPaths(size);
+
+      for (int i = 0; i < WARMUP_RUNS; i++)
+        buildWorkList(paths);
+      long workListTime = buildWorkList(paths);
+
+      String stackTime = "-";
+      if (size <= MAX_STACK_SIZE)
+      {
+        buildStack(paths);
+        stackTime = buildStack(paths) + " ms";
+      }
+
+      System.out.println(size + " paths : PathWorkList " + workListTime + " ms, Stack "
+        + stackTime);
+    }
+  }
+
+  private static String[] createPaths(int size)
+  {
+    String[] result = new String[size];
+    for (int i = 0; i < size; i++)
+    {
+      result[i] = "/project/module" + (i % 300) + "/classes/org/sample/package"
+        + (i % 1000) + "/Class" + i + ".class";
+    }
+
+    return result;
+  }
+
+  private static long buildWorkList(String[] paths)
+  {
+    long start = System.currentTimeMillis();
+    PathWorkList<String> list = new PathWorkList<String>();
+    for (String path : paths)
+    {
+      list.add(path);
+      list.add(path);
+    }
+
+    return System.currentTimeMillis() - start;
+  }
+
+  private static long buildStack(String[] paths)
+  {
+    long start = System.currentTimeMillis();
+    Stack<String> stack = new Stack<String>();
+    for (String path : paths)
+    {
+      for (int i = 0; i < 2; i++)
+      {
+        if (!stack.contains(path))
+          stack.push(path);
+      }
+    }
+
+    return System.currentTimeMillis() - start;
+  }
+}
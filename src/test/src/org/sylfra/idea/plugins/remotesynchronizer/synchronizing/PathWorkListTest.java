@@ -0,0 +1,54 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+import junit.framework.TestCase;
+
+public class PathWorkListTest extends TestCase
+{
+  private PathWorkList<String> list;
+
+  protected void setUp()
+    throws Exception
+  {
+    list = new PathWorkList<String>();
+  }
+
+  public void testDuplicatesAreIgnored()
+  {
+    assertTrue(list.add("a"));
+    assertTrue(list.add("b"));
+    assertFalse(list.add("a"));
+
+    assertEquals(2, list.size());
+  }
+
+  public void testRemovedElementIsNotAddedAgain()
+  {
+    list.add("a");
+    assertEquals("a", list.removeFirst());
+
+    assertFalse(list.add("a"));
+    assertTrue(list.isEmpty());
+  }
+
+  public void testInsertionOrder()
+  {
+    list.add("a");
+    list.add("b");
+    list.add("c");
+
+    assertEquals("a", list.removeFirst());
+    assertEquals("c", list.removeLast());
+    assertEquals("b", list.removeFirst());
+    assertNull(list.removeFirst());
+    assertNull(list.removeLast());
+  }
+
+  public void testClear()
+  {
+    list.add("a");
+    list.clear();
+
+    assertTrue(list.isEmpty());
+    assertTrue(list.add("a"));
+  }
+}
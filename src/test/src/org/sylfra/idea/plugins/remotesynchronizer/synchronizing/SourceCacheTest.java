@@ -0,0 +1,123 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+import org.sylfra.idea.plugins.remotesynchronizer.TempFilesTestCase;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.FileAttributes;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class SourceCacheTest extends TempFilesTestCase
+{
+  private File file1;
+  private File file2;
+
+  protected void setUp()
+    throws Exception
+  {
+    file1 = createTempFile("source-cache");
+    file2 = createTempFile("source-cache");
+    write(file1, "content 1");
+    write(file2, "content 2");
+  }
+
+  public void testSingleReaderIsNotCached()
+  {
+    SourceCache cache = new SourceCache(1, 1024);
+    assertNull(cache.get(file1, FileAttributes.read(file1)));
+  }
+
+  public void testFileIsReadOnce()
+    throws IOException
+  {
+    SourceCache cache = new SourceCache(2, 1024);
+    FileAttributes attributes = FileAttributes.read(file1);
+
+    assertContent("content 1", cache.get(file1, attributes));
+    assertEquals(9, cache.getSize());
+
+    // Second reader gets the content read by the first one
+    write(file1, "modified!");
+    assertContent("content 1", cache.get(file1, attributes));
+
+    // Content is dropped once every reader has got it
+    assertEquals(0, cache.getSize());
+    assertEquals(0, cache.getEntriesCount());
+  }
+
+  public void testChangedFileIsNotReturned()
+    throws IOException
+  {
+    SourceCache cache = new SourceCache(2, 1024);
+    assertContent("content 1", cache.get(file1, FileAttributes.read(file1)));
+
+    write(file1, "longer content");
+    assertNull(cache.get(file1, FileAttributes.read(file1)));
+  }
+
+  public void testOldestContentIsEvicted()
+  {
+    SourceCache cache = new SourceCache(2, 10);
+    assertContent("content 1", cache.get(file1, FileAttributes.read(file1)));
+    assertContent("content 2", cache.get(file2, FileAttributes.read(file2)));
+
+    assertEquals(9, cache.getSize());
+    assertEquals(1, cache.getEntriesCount());
+  }
+
+  public void testLargeFileIsNotCached()
+    throws IOException
+  {
+    write(file1, new byte[SourceCache.MAX_FILE_SIZE + 1]);
+
+    SourceCache cache = new SourceCache(2, Long.MAX_VALUE);
+    assertNull(cache.get(file1, FileAttributes.read(file1)));
+    assertEquals(0, cache.getSize());
+  }
+
+  public void testSizeIsKeptUnderConcurrentReads()
+    throws Exception
+  {
+    final File[] files = new File[200];
+    for (int i = 0; i < files.length; i++)
+    {
+      files[i] = createTempFile("source-cache");
+      write(files[i], random(64 * 1024));
+    }
+
+    // Contents are evicted as soon as they are counted, possibly while other
+    // readers are loading them
+    final SourceCache cache = new SourceCache(4, 0);
+    Thread[] readers = new Thread[4];
+    for (int i = 0; i < readers.length; i++)
+    {
+      // Each reader starts with other files
+      final int offset = i * files.length / readers.length;
+      readers[i] = new Thread()
+      {
+        public void run()
+        {
+          for (int j = 0; j < files.length; j++)
+          {
+            File f = files[(offset + j) % files.length];
+            cache.get(f, FileAttributes.read(f));
+          }
+        }
+      };
+      readers[i].start();
+    }
+    for (Thread reader : readers)
+    {
+      reader.join();
+    }
+
+    assertEquals(0, cache.getSize());
+    assertEquals(0, cache.getEntriesCount());
+  }
+
+  private static void assertContent(String expected, byte[] content)
+  {
+    assertNotNull(content);
+    assertTrue(Arrays.equals(expected.getBytes(), content));
+  }
+}
@@ -0,0 +1,139 @@
+package org.sylfra.idea.plugins.remotesynchronizer.synchronizing;
+
+import org.sylfra.idea.plugins.remotesynchronizer.TempFilesTestCase;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.ContentDigest;
+import org.sylfra.idea.plugins.remotesynchronizer.utils.FileAttributes;
+
+import java.io.File;
+import java.io.IOException;
+
+public class SynchroManifestTest extends TempFilesTestCase
+{
+  private static final String DEST_PATH = "r:/remote/file.txt";
+
+  private File manifestFile;
+  private File srcFile;
+
+  protected void setUp()
+    throws Exception
+  {
+    manifestFile = createTempFile("synchro");
+    manifestFile.delete();
+    srcFile = createTempFile("synchro-src");
+    write(srcFile, "content");
+  }
+
+  public void testUnknownFileIsChanged()
+  {
+    SynchroManifest manifest = new SynchroManifest(manifestFile);
+    assertFalse(manifest.isUnchanged(srcFile.getPath(), DEST_PATH, srcFile));
+  }
+
+  public void testCopiedFileIsUnchanged()
+  {
+    SynchroManifest manifest = new SynchroManifest(manifestFile);
+    manifest.recordCopy(srcFile.getPath(), DEST_PATH, srcFile);
+
+    assertTrue(manifest.isUnchanged(srcFile.getPath(), DEST_PATH, srcFile));
+    assertFalse(manifest.isUnchanged(srcFile.getPath(), DEST_PATH + ".other", srcFile));
+  }
+
+  public void testTouchedFileIsUnchanged()
+  {
+    SynchroManifest manifest = new SynchroManifest(manifestFile);
+    manifest.recordCopy(srcFile.getPath(), DEST_PATH, srcFile);
+    srcFile.setLastModified(srcFile.lastModified() - 60000);
+
+    assertTrue(manifest.isUnchanged(srcFile.getPath(), DEST_PATH, srcFile));
+  }
+
+  public void testModifiedFileIsChanged()
+    throws IOException
+  {
+    SynchroManifest manifest = new SynchroManifest(manifestFile);
+    manifest.recordCopy(srcFile.getPath(), DEST_PATH, srcFile);
+    write(srcFile, "CONTENT");
+    srcFile.setLastModified(srcFile.lastModified() - 60000);
+
+    assertFalse(manifest.isUnchanged(srcFile.getPath(), DEST_PATH, srcFile));
+  }
+
+  public void testWrittenContentIsRecorded()
+    throws IOException
+  {
+    SynchroManifest manifest = new SynchroManifest(manifestFile);
+    // Source has changed since it was written
+    manifest.recordCopy(srcFile.getPath(), DEST_PATH, srcFile.lastModified(), digest("CONTENT"));
+    srcFile.setLastModified(srcFile.lastModified() - 60000);
+
+    assertFalse(manifest.isUnchanged(srcFile.getPath(), DEST_PATH, srcFile));
+  }
+
+  public void testTouchedChunkedCopyIsUnchanged()
+    throws IOException
+  {
+    SynchroManifest manifest = new SynchroManifest(manifestFile);
+    ContentDigest digest = new ContentDigest(true);
+    digest.append(digest("content"));
+    manifest.recordCopy(srcFile.getPath(), DEST_PATH, srcFile.lastModified(), digest);
+    srcFile.setLastModified(srcFile.lastModified() - 60000);
+
+    assertTrue(manifest.isUnchanged(srcFile.getPath(), DEST_PATH, srcFile));
+  }
+
+  public void testRemovedFileIsChanged()
+  {
+    SynchroManifest manifest = new SynchroManifest(manifestFile);
+    manifest.recordCopy(srcFile.getPath(), DEST_PATH, srcFile);
+    manifest.remove(srcFile.getPath());
+
+    assertFalse(manifest.isUnchanged(srcFile.getPath(), DEST_PATH, srcFile));
+  }
+
+  public void testSaveAndLoad()
+    throws IOException
+  {
+    SynchroManifest manifest = new SynchroManifest(manifestFile);
+    manifest.recordCopy(srcFile.getPath(), DEST_PATH, srcFile);
+    manifest.save();
+
+    SynchroManifest loaded = new SynchroManifest(manifestFile);
+    loaded.load();
+    assertTrue(loaded.isUnchanged(srcFile.getPath(), DEST_PATH, srcFile));
+  }
+
+  public void testBlockHashesAreSavedAndLoaded()
+    throws IOException
+  {
+    SynchroManifest manifest = new SynchroManifest(manifestFile);
+    manifest.recordCopy(srcFile.getPath(), DEST_PATH, srcFile, true);
+    manifest.save();
+
+    SynchroManifest loaded = new SynchroManifest(manifestFile);
+    loaded.load();
+    FileAttributes destAttributes = FileAttributes.read(srcFile);
+    assertEquals(SynchroManifest.computeHash(srcFile),
+      loaded.getBlockHashes(srcFile.getPath(), DEST_PATH, destAttributes));
+  }
+
+  public void testBlockHashesOfChangedDestinationAreUnknown()
+  {
+    SynchroManifest manifest = new SynchroManifest(manifestFile);
+    manifest.recordCopy(srcFile.getPath(), DEST_PATH, srcFile, true);
+    srcFile.setLastModified(srcFile.lastModified() - 60000);
+
+    assertNull(manifest.getBlockHashes(srcFile.getPath(), DEST_PATH, FileAttributes.read(srcFile)));
+  }
+
+  /**
+   * Returns the digest of written content
+   */
+  private static ContentDigest digest(String content)
+    throws IOException
+  {
+    ContentDigest result = new ContentDigest(true);
+    result.update(content.getBytes("UTF-8"), 0, content.length());
+    result.finish();
+    return result;
+  }
+}
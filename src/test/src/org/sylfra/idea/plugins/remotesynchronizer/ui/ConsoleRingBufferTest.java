@@ -0,0 +1,105 @@
+package org.sylfra.idea.plugins.remotesynchronizer.ui;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class ConsoleRingBufferTest extends TestCase
+{
+  public void testCapacityIsRoundedToPowerOfTwo()
+  {
+    assertEquals(8, new ConsoleRingBuffer<String>(8).getCapacity());
+    assertEquals(16, new ConsoleRingBuffer<String>(9).getCapacity());
+    assertEquals(2, new ConsoleRingBuffer<String>(1).getCapacity());
+  }
+
+  public void testFifoOrder()
+  {
+    ConsoleRingBuffer<String> buffer = new ConsoleRingBuffer<String>(4);
+    assertNull(buffer.poll());
+
+    buffer.add("a");
+    buffer.add("b");
+    assertEquals("a", buffer.poll());
+    buffer.add("c");
+    assertEquals("b", buffer.poll());
+    assertEquals("c", buffer.poll());
+    assertNull(buffer.poll());
+  }
+
+  public void testFullBufferDropsOldestElements()
+  {
+    ConsoleRingBuffer<String> buffer = new ConsoleRingBuffer<String>(2);
+    buffer.add("a");
+    buffer.add("b");
+    buffer.add("c");
+    buffer.add("d");
+    assertEquals(2, buffer.takeDroppedCount());
+    assertEquals(0, buffer.takeDroppedCount());
+
+    assertEquals("c", buffer.poll());
+    buffer.add("e");
+    assertEquals("d", buffer.poll());
+    assertEquals("e", buffer.poll());
+    assertNull(buffer.poll());
+    assertEquals(0, buffer.takeDroppedCount());
+  }
+
+  public void testConcurrentProducers()
+    throws Exception
+  {
+    final ConsoleRingBuffer<String> buffer = new ConsoleRingBuffer<String>(64);
+    final int producersCount = 4;
+    final int linesCount = 10000;
+
+    Thread[] producers = new Thread[producersCount];
+    for (int i = 0; i < producersCount; i++)
+    {
+      final int producer = i;
+      producers[i] = new Thread()
+      {
+        public void run()
+        {
+          for (int j = 0; j < linesCount; j++)
+          {
+            buffer.add(producer + ":" + j);
+          }
+        }
+      };
+      producers[i].start();
+    }
+
+    Set<String> received = new HashSet<String>();
+    int[] lastReceived = new int[producersCount];
+    Arrays.fill(lastReceived, -1);
+    long droppedCount = 0;
+    while (received.size() + droppedCount < producersCount * linesCount)
+    {
+      droppedCount += buffer.takeDroppedCount();
+      String line = buffer.poll();
+      if (line == null)
+      {
+        Thread.yield();
+        continue;
+      }
+
+      assertTrue(received.add(line));
+
+      // Lines of a producer keep their order, some may have been dropped
+      int i = line.indexOf(':');
+      int producer = Integer.parseInt(line.substring(0, i));
+      int index = Integer.parseInt(line.substring(i + 1));
+      assertTrue(index > lastReceived[producer]);
+      lastReceived[producer] = index;
+    }
+
+    for (Thread producer : producers)
+    {
+      producer.join();
+    }
+    assertNull(buffer.poll());
+    assertEquals(0, buffer.takeDroppedCount());
+  }
+}
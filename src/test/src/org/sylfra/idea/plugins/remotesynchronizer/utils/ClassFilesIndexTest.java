@@ -0,0 +1,170 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+public class ClassFilesIndexTest extends TestCase
+{
+  private static final String PACKAGE_PATH = "org/sample";
+
+  private File outputDir;
+  private File packageDir;
+  private ClassFilesIndex index;
+
+  protected void setUp()
+    throws Exception
+  {
+    outputDir = File.createTempFile("classes", "");
+    outputDir.delete();
+    packageDir = new File(outputDir, PACKAGE_PATH);
+    packageDir.mkdirs();
+    index = new ClassFilesIndex();
+  }
+
+  protected void tearDown()
+    throws Exception
+  {
+    for (File f : packageDir.listFiles())
+    {
+      f.delete();
+    }
+    packageDir.delete();
+    packageDir.getParentFile().delete();
+    outputDir.delete();
+  }
+
+  public void testReadSourceName()
+    throws IOException
+  {
+    assertEquals("ClassFilesIndexTest.java",
+      ClassFilesIndex.readSourceName(getClassFile(ClassFilesIndexTest.class)));
+    assertEquals("ClassFilesIndexTest.java",
+      ClassFilesIndex.readSourceName(getClassFile(Secondary.class)));
+    assertNull(ClassFilesIndex.readSourceName(createFile("Broken.class")));
+  }
+
+  public void testNestedAndSecondaryClasses()
+    throws IOException
+  {
+    copyClassFile(ClassFilesIndexTest.class);
+    copyClassFile(Nested.class);
+    // A secondary class of the source file, only found by reading its source name
+    copyClassFile(Secondary.class, "Secondary.class");
+    createFile("Other.class");
+    createFile("Other$1.class");
+
+    assertEquals(
+      Arrays.asList(getPath("ClassFilesIndexTest$Nested.class"), getPath("Secondary.class"),
+        getPath("ClassFilesIndexTest.class")),
+      sort(index.getClassFilePaths(getOutputPath(), PACKAGE_PATH, "ClassFilesIndexTest.java")));
+
+    // Source name is guessed when class file can't be read
+    assertEquals(Arrays.asList(getPath("Other$1.class"), getPath("Other.class")),
+      sort(index.getClassFilePaths(getOutputPath(), PACKAGE_PATH, "Other.java")));
+  }
+
+  public void testMissingMainClass()
+  {
+    assertEquals(Arrays.asList(getPath("Missing.class")),
+      index.getClassFilePaths(getOutputPath(), PACKAGE_PATH, "Missing.java"));
+  }
+
+  public void testGeneratedFileIsIndexed()
+    throws IOException
+  {
+    createFile("Other.class");
+    assertEquals(1, index.getClassFilePaths(getOutputPath(), PACKAGE_PATH, "Other.java").size());
+
+    createFile("Other$Inner.class");
+    index.fileGenerated(getPath("Other$Inner.class"));
+    assertEquals(Arrays.asList(getPath("Other$Inner.class"), getPath("Other.class")),
+      index.getClassFilePaths(getOutputPath(), PACKAGE_PATH, "Other.java"));
+  }
+
+  private String getOutputPath()
+  {
+    return outputDir.getAbsolutePath().replace(File.separatorChar, '/');
+  }
+
+  private String getPath(String name)
+  {
+    return getOutputPath() + '/' + PACKAGE_PATH + '/' + name;
+  }
+
+  /**
+   * Sorts all paths but the last one, which is the main class file
+   */
+  private static List<String> sort(List<String> paths)
+  {
+    String[] result = paths.toArray(new String[paths.size()]);
+    Arrays.sort(result, 0, result.length - 1);
+    return Arrays.asList(result);
+  }
+
+  private File createFile(String name)
+    throws IOException
+  {
+    File result = new File(packageDir, name);
+    OutputStream out = new FileOutputStream(result);
+    try
+    {
+      out.write(new byte[]{1, 2, 3});
+    }
+    finally
+    {
+      out.close();
+    }
+
+    return result;
+  }
+
+  private static File getClassFile(Class<?> c)
+  {
+    String name = c.getName();
+    return new File(c.getResource(name.substring(name.lastIndexOf('.') + 1) + ".class")
+      .getPath());
+  }
+
+  private void copyClassFile(Class<?> c)
+    throws IOException
+  {
+    copyClassFile(c, getClassFile(c).getName());
+  }
+
+  private void copyClassFile(Class<?> c, String name)
+    throws IOException
+  {
+    InputStream in = new FileInputStream(getClassFile(c));
+    OutputStream out = new FileOutputStream(new File(packageDir, name));
+    try
+    {
+      byte[] buffer = new byte[4096];
+      int n;
+      while ((n = in.read(buffer)) != -1)
+      {
+        out.write(buffer, 0, n);
+      }
+    }
+    finally
+    {
+      in.close();
+      out.close();
+    }
+  }
+
+  private static class Nested
+  {
+  }
+
+  private static class Secondary
+  {
+  }
+}
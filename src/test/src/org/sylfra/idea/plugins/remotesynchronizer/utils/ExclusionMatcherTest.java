@@ -0,0 +1,81 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+
+public class ExclusionMatcherTest extends TestCase
+{
+  public void testNoPattern()
+  {
+    ExclusionMatcher matcher = new ExclusionMatcher(new String[0]);
+
+    assertTrue(matcher.isEmpty());
+    assertFalse(matcher.isExcluded("c:/project/Foo.java"));
+  }
+
+  public void testLiteralPattern()
+  {
+    ExclusionMatcher matcher = new ExclusionMatcher(new String[]{"c:/project/Foo.java"});
+
+    assertTrue(matcher.isExcluded("c:/project/Foo.java", false));
+    assertFalse(matcher.isExcluded("c:/project/Foo.java2", false));
+    assertFalse(matcher.isExcluded("c:/project/Foo.java", true));
+  }
+
+  public void testStarMatchesSeparators()
+  {
+    ExclusionMatcher matcher = new ExclusionMatcher(new String[]{"**/*.java"});
+
+    assertTrue(matcher.isExcluded("c:/project/src/org/Foo.java", false));
+    assertFalse(matcher.isExcluded("Foo.java", false));
+    assertFalse(matcher.isExcluded("c:/project/src/org/Foo.class", false));
+  }
+
+  public void testQuestionMark()
+  {
+    ExclusionMatcher matcher = new ExclusionMatcher(new String[]{"*/Foo?.class"});
+
+    assertTrue(matcher.isExcluded("c:/classes/Foo1.class", false));
+    assertFalse(matcher.isExcluded("c:/classes/Foo.class", false));
+    assertFalse(matcher.isExcluded("c:/classes/Foo12.class", false));
+  }
+
+  public void testMiddleFragments()
+  {
+    ExclusionMatcher matcher = new ExclusionMatcher(new String[]{"*/.svn/*"});
+
+    assertTrue(matcher.isExcluded("c:/project/.svn/entries", false));
+    assertTrue(matcher.isExcluded("c:/project/.svn", true));
+    assertFalse(matcher.isExcluded("c:/project/.svn", false));
+    assertFalse(matcher.isExcluded("c:/project/svn/entries", false));
+  }
+
+  public void testDirectoryIsCheckedOnDisk()
+  {
+    String tmpDir = new File(System.getProperty("java.io.tmpdir")).getAbsolutePath()
+      .replace(File.separatorChar, '/');
+    ExclusionMatcher matcher = new ExclusionMatcher(new String[]{tmpDir + "/*"});
+
+    assertTrue(new File(tmpDir).isDirectory());
+    assertTrue(matcher.isExcluded(tmpDir));
+  }
+
+  public void testExcludesChildren()
+  {
+    ExclusionMatcher matcher = new ExclusionMatcher(new String[]{
+      "**/.svn/*", "c:/project/build*", "**/CVS", "*.tmp", "c:/project/cache/"});
+
+    assertTrue(matcher.excludesChildren("c:/project/src/.svn"));
+    assertTrue(matcher.excludesChildren("c:/project/src/.svn/text-base"));
+    assertTrue(matcher.excludesChildren("c:/project/build"));
+    assertTrue(matcher.excludesChildren("c:/project/build-old"));
+
+    // Only the directory itself, or some of its files, are excluded
+    assertFalse(matcher.excludesChildren("c:/project/src/CVS"));
+    assertFalse(matcher.excludesChildren("c:/project/cache"));
+    assertFalse(matcher.excludesChildren("c:/project/src"));
+    assertFalse(matcher.excludesChildren("c:/project/src/.svn-old"));
+    assertFalse(new ExclusionMatcher(new String[0]).excludesChildren("c:/project"));
+  }
+}
@@ -0,0 +1,68 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import org.sylfra.idea.plugins.remotesynchronizer.TempFilesTestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+public class FileAttributesTest extends TempFilesTestCase
+{
+  private File file;
+
+  protected void setUp()
+    throws Exception
+  {
+    file = createTempFile("attributes");
+    write(file, new byte[123]);
+    file.setLastModified(1234000L);
+  }
+
+  public void testBulkReadSupported()
+  {
+    // Tests run on Java 7 or later
+    assertTrue(FileAttributes.isBulkReadSupported());
+  }
+
+  public void testFile()
+  {
+    checkFile(FileAttributes.read(file));
+    checkFile(FileAttributes.readLegacy(file));
+  }
+
+  public void testDirectory()
+  {
+    checkDirectory(FileAttributes.read(file.getParentFile()));
+    checkDirectory(FileAttributes.readLegacy(file.getParentFile()));
+  }
+
+  public void testMissingFile()
+    throws IOException
+  {
+    File missing = new File(file.getPath() + ".missing");
+    assertSame(FileAttributes.MISSING, FileAttributes.read(missing));
+    assertSame(FileAttributes.MISSING, FileAttributes.readLegacy(missing));
+    assertSame(FileAttributes.MISSING, FileAttributes.read(new File(missing, "child")));
+  }
+
+  public void testChildOfFile()
+  {
+    assertFalse(FileAttributes.read(new File(file, "child")).exists());
+  }
+
+  private void checkFile(FileAttributes attributes)
+  {
+    assertTrue(attributes.exists());
+    assertTrue(attributes.isFile());
+    assertFalse(attributes.isDirectory());
+    assertEquals(1234000L, attributes.getLastModified());
+    assertEquals(123, attributes.getSize());
+  }
+
+  private void checkDirectory(FileAttributes attributes)
+  {
+    assertTrue(attributes.exists());
+    assertFalse(attributes.isFile());
+    assertTrue(attributes.isDirectory());
+    assertEquals(0, attributes.getSize());
+  }
+}
@@ -0,0 +1,265 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import org.sylfra.idea.plugins.remotesynchronizer.TempFilesTestCase;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class FileCopierTest extends TempFilesTestCase
+{
+  private File srcFile;
+  private File destFile;
+
+  protected void setUp()
+    throws Exception
+  {
+    srcFile = createTempFile("copier-src");
+    destFile = createTempFile("copier-dest");
+  }
+
+  public void testCopySmallFile()
+    throws IOException
+  {
+    checkCopy(1000);
+  }
+
+  public void testCopyLargeFile()
+    throws IOException
+  {
+    checkCopy((int) FileCopier.TRANSFER_THRESHOLD * 5 + 17);
+  }
+
+  public void testCopyEmptyFile()
+    throws IOException
+  {
+    checkCopy(0);
+  }
+
+  public void testReplaceLongerFile()
+    throws IOException
+  {
+    write(destFile, random(5000));
+    checkCopy(100);
+  }
+
+  public void testMissingSourceKeepsDestination()
+    throws IOException
+  {
+    srcFile.delete();
+    try
+    {
+      FileCopier.copy(srcFile, destFile);
+      fail();
+    }
+    catch (IOException e)
+    {
+      // Source is missing, destination must not have been truncated
+      assertTrue(destFile.exists());
+    }
+  }
+
+  public void testWriteReplacesLongerFile()
+    throws IOException
+  {
+    write(destFile, random(5000));
+    byte[] content = random(100);
+    FileCopier.write(content, destFile, 1000000000000L);
+
+    assertTrue(Arrays.equals(content, read(destFile)));
+    assertEquals(1000000000000L, destFile.lastModified());
+  }
+
+  public void testCopyDetachedKeepsLinkedFile()
+    throws IOException
+  {
+    if (!FileLinker.isSupported())
+      return;
+
+    File linkedFile = createTempFile("copier-linked");
+    write(linkedFile, "linked content");
+    assertTrue(FileLinker.link(linkedFile, destFile));
+
+    byte[] content = random(1000);
+    write(srcFile, content);
+    FileCopier.copyDetached(srcFile, destFile, 1000000000000L, null);
+
+    assertTrue(Arrays.equals(content, read(destFile)));
+    assertEquals(1000000000000L, destFile.lastModified());
+    assertEquals("linked content", new String(read(linkedFile), "UTF-8"));
+    assertEquals(0, getPartFiles().length);
+  }
+
+  public void testWriteDetachedKeepsLinkedFile()
+    throws IOException
+  {
+    if (!FileLinker.isSupported())
+      return;
+
+    File linkedFile = createTempFile("copier-linked");
+    write(linkedFile, "linked content");
+    assertTrue(FileLinker.link(linkedFile, destFile));
+
+    byte[] content = random(1000);
+    FileCopier.writeDetached(content, destFile, 1000000000000L, null);
+
+    assertTrue(Arrays.equals(content, read(destFile)));
+    assertEquals("linked content", new String(read(linkedFile), "UTF-8"));
+  }
+
+  public void testFailedCopyDetachedKeepsDestination()
+    throws IOException
+  {
+    write(destFile, "old content");
+    srcFile.delete();
+    try
+    {
+      FileCopier.copyDetached(srcFile, destFile, 1000000000000L, null);
+      fail();
+    }
+    catch (IOException e)
+    {
+      assertEquals("old content", new String(read(destFile), "UTF-8"));
+      assertEquals(0, getPartFiles().length);
+    }
+  }
+
+  public void testCopyChunked()
+    throws IOException
+  {
+    write(destFile, random(5000));
+    checkChunkedCopy(3 * 100000 + 17, 100000);
+  }
+
+  public void testChunkedCopyKeepsUserPartFile()
+    throws IOException
+  {
+    File userFile = deleteAfterTest(new File(destFile.getPath() + ".part"));
+    write(userFile, "user content");
+    checkChunkedCopy(3 * 100000 + 17, 100000);
+
+    assertEquals("user content", new String(read(userFile), "UTF-8"));
+  }
+
+  public void testCopySingleChunk()
+    throws IOException
+  {
+    checkChunkedCopy(1000, 100000);
+  }
+
+  public void testCopyDigest()
+    throws IOException
+  {
+    byte[] content = random((int) FileCopier.TRANSFER_THRESHOLD * 2 + 17);
+    write(srcFile, content);
+
+    ContentDigest digest = new ContentDigest(false);
+    FileCopier.copy(srcFile, destFile, 1000000000000L, digest);
+    assertEquals(digest(content).getHash(), digest.getHash());
+    assertEquals(content.length, digest.getLength());
+  }
+
+  public void testChunkedCopyDigest()
+    throws IOException
+  {
+    byte[] content = random(ContentDigest.BLOCK_SIZE * 2 + 17);
+    write(srcFile, content);
+
+    ContentDigest digest = new ContentDigest(true);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try
+    {
+      FileCopier.copyChunked(srcFile, destFile, 1000000000000L, 100000, executor, digest);
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+
+    assertTrue(Arrays.equals(content, read(destFile)));
+    // Chunks are hashed apart, only their blocks are known
+    assertNull(digest.getHash());
+    assertEquals(digest(content).getBlockHashes(), digest.getBlockHashes());
+    assertEquals(content.length, digest.getLength());
+  }
+
+  public void testChunkedCopyOfMissingSourceKeepsDestination()
+    throws IOException
+  {
+    srcFile.delete();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try
+    {
+      FileCopier.copyChunked(srcFile, destFile, 1000000000000L, 100000, executor);
+      fail();
+    }
+    catch (IOException e)
+    {
+      assertTrue(destFile.exists());
+      assertEquals(0, getPartFiles().length);
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+
+  private void checkChunkedCopy(int size, long chunkSize)
+    throws IOException
+  {
+    byte[] content = random(size);
+    write(srcFile, content);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try
+    {
+      FileCopier.copyChunked(srcFile, destFile, 1000000000000L, chunkSize, executor);
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+
+    assertTrue(Arrays.equals(content, read(destFile)));
+    assertEquals(1000000000000L, destFile.lastModified());
+    assertEquals(0, getPartFiles().length);
+  }
+
+  /**
+   * Temporary files left by a chunked copy to destination
+   */
+  private File[] getPartFiles()
+  {
+    return destFile.getParentFile().listFiles(new FilenameFilter()
+    {
+      public boolean accept(File dir, String name)
+      {
+        return (name.startsWith(destFile.getName() + "-copy")) && (name.endsWith(".part"));
+      }
+    });
+  }
+
+  private static ContentDigest digest(byte[] content)
+  {
+    ContentDigest result = new ContentDigest(true);
+    result.update(content, 0, content.length);
+    result.finish();
+    return result;
+  }
+
+  private void checkCopy(int size)
+    throws IOException
+  {
+    byte[] content = random(size);
+    write(srcFile, content);
+    srcFile.setLastModified(1000000000000L);
+
+    FileCopier.copy(srcFile, destFile);
+
+    assertTrue(Arrays.equals(content, read(destFile)));
+    assertEquals(srcFile.lastModified(), destFile.lastModified());
+  }
+}
@@ -0,0 +1,57 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import org.sylfra.idea.plugins.remotesynchronizer.TempFilesTestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+public class FileLinkerTest extends TempFilesTestCase
+{
+  private File srcFile;
+  private File destFile;
+
+  protected void setUp()
+    throws Exception
+  {
+    srcFile = createTempFile("linker-src");
+    destFile = deleteAfterTest(new File(srcFile.getPath() + ".link"));
+    write(srcFile, "content");
+  }
+
+  public void testSupported()
+  {
+    // Tests run on Java 7 or later
+    assertTrue(FileLinker.isSupported());
+  }
+
+  public void testLinkIsSameFile()
+  {
+    assertTrue(FileLinker.link(srcFile, destFile));
+    assertTrue(FileAttributes.read(srcFile).isSameFile(FileAttributes.read(destFile)));
+  }
+
+  public void testLinkReplacesDestination()
+    throws IOException
+  {
+    write(destFile, "old content");
+    assertFalse(FileAttributes.read(srcFile).isSameFile(FileAttributes.read(destFile)));
+
+    assertTrue(FileLinker.link(srcFile, destFile));
+    assertEquals(srcFile.length(), destFile.length());
+    assertTrue(FileAttributes.read(srcFile).isSameFile(FileAttributes.read(destFile)));
+  }
+
+  public void testCopyIsNotSameFile()
+    throws IOException
+  {
+    FileCopier.copy(srcFile, destFile);
+    assertFalse(FileAttributes.read(srcFile).isSameFile(FileAttributes.read(destFile)));
+  }
+
+  public void testMissingSourceFails()
+  {
+    srcFile.delete();
+    assertFalse(FileLinker.link(srcFile, destFile));
+    assertFalse(destFile.exists());
+  }
+}
@@ -0,0 +1,88 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import org.sylfra.idea.plugins.remotesynchronizer.TempFilesTestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+public class FileMoverTest extends TempFilesTestCase
+{
+  private File srcFile;
+  private File destFile;
+
+  protected void setUp()
+    throws Exception
+  {
+    srcFile = createTempFile("mover-src");
+    destFile = createTempFile("mover-dest");
+    write(srcFile, "new content");
+    write(destFile, "old content");
+  }
+
+  public void testReplace()
+    throws IOException
+  {
+    FileMover.replace(srcFile, destFile);
+    checkReplaced();
+  }
+
+  public void testReplaceLegacy()
+    throws IOException
+  {
+    FileMover.replaceLegacy(srcFile, destFile);
+    checkReplaced();
+  }
+
+  public void testReplaceMissingDestination()
+    throws IOException
+  {
+    destFile.delete();
+    FileMover.replace(srcFile, destFile);
+    checkReplaced();
+  }
+
+  public void testFailedReplaceKeepsDestination()
+    throws IOException
+  {
+    srcFile.delete();
+    try
+    {
+      FileMover.replace(srcFile, destFile);
+      fail();
+    }
+    catch (IOException e)
+    {
+      // Expected
+    }
+    checkUnchanged();
+  }
+
+  public void testFailedReplaceLegacyKeepsDestination()
+    throws IOException
+  {
+    srcFile.delete();
+    try
+    {
+      FileMover.replaceLegacy(srcFile, destFile);
+      fail();
+    }
+    catch (IOException e)
+    {
+      // Expected
+    }
+    checkUnchanged();
+  }
+
+  private void checkReplaced()
+    throws IOException
+  {
+    assertFalse(srcFile.exists());
+    assertEquals("new content", new String(read(destFile), "UTF-8"));
+  }
+
+  private void checkUnchanged()
+    throws IOException
+  {
+    assertEquals("old content", new String(read(destFile), "UTF-8"));
+  }
+}
@@ -0,0 +1,129 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import junit.framework.TestCase;
+
+public class MappingIndexTest extends TestCase
+{
+  private static final String PROJECT_ROOT = "c:/Project1";
+  private static final String DEST_ROOT = "r:/remote";
+
+  private MappingIndex index;
+
+  protected void setUp()
+    throws Exception
+  {
+    index = new MappingIndex();
+    index.add(PROJECT_ROOT + "/classes", DEST_ROOT + "/classes");
+    index.add(PROJECT_ROOT + "/dir1", DEST_ROOT + "/dir1-new");
+    index.add(PROJECT_ROOT + "/dir2/dir2-1", DEST_ROOT + "/dir2-1-new");
+    index.add(PROJECT_ROOT + "/file1.txt", DEST_ROOT + "/files/file1.txt");
+    index.add(PROJECT_ROOT + "/file2.txt", DEST_ROOT + "/files/");
+    index.add(PROJECT_ROOT + "/file3.txt", DEST_ROOT + "/files/file3-new.txt");
+    index.add(PROJECT_ROOT, DEST_ROOT + "/remain-dir");
+  }
+
+  public void testGetRemotePath()
+  {
+    // Test srcPath == "."
+    assertEquals(DEST_ROOT + "/remain-dir/dir99/test99.txt",
+      index.getRemotePath(PROJECT_ROOT + "/dir99/test99.txt"));
+
+    // Test include file to file
+    assertEquals(DEST_ROOT + "/dir1-new/test1.txt",
+      index.getRemotePath(PROJECT_ROOT + "/dir1/test1.txt"));
+
+    // Test include file to other file
+    assertEquals(DEST_ROOT + "/files/file3-new.txt",
+      index.getRemotePath(PROJECT_ROOT + "/file3.txt"));
+
+    // Test include file to dir
+    assertEquals(DEST_ROOT + "/files/file2.txt",
+      index.getRemotePath(PROJECT_ROOT + "/file2.txt"));
+
+    // Test include dir to other dir
+    assertEquals(DEST_ROOT + "/dir2-1-new/file88.txt",
+      index.getRemotePath(PROJECT_ROOT + "/dir2/dir2-1/file88.txt"));
+  }
+
+  public void testGetRemotePathIgnoresCase()
+  {
+    assertEquals(DEST_ROOT + "/dir1-new/test1.txt",
+      index.getRemotePath(PROJECT_ROOT.toUpperCase() + "/DIR1/test1.txt"));
+  }
+
+  public void testGetRemotePathMatchesWholeNames()
+  {
+    assertEquals(DEST_ROOT + "/remain-dir/dir1b/test1.txt",
+      index.getRemotePath(PROJECT_ROOT + "/dir1b/test1.txt"));
+    assertNull(index.getRemotePath("c:/Project10/test.txt"));
+  }
+
+  public void testGetSrcPath()
+  {
+    assertEquals(PROJECT_ROOT + "/dir1/test1.txt",
+      index.getSrcPath(DEST_ROOT + "/dir1-new/test1.txt"));
+    assertEquals(PROJECT_ROOT + "/dir99/test99.txt",
+      index.getSrcPath(DEST_ROOT + "/remain-dir/dir99/test99.txt"));
+    assertEquals(PROJECT_ROOT + "/file3.txt",
+      index.getSrcPath(DEST_ROOT + "/files/file3-new.txt"));
+    assertNull(index.getSrcPath("r:/other/test.txt"));
+  }
+
+  public void testGetSrcPathChecksRemotePath()
+  {
+    // Copied to dir2-1-new, not to remain-dir
+    assertNull(index.getSrcPath(DEST_ROOT + "/remain-dir/dir2/dir2-1/file88.txt"));
+  }
+
+  public void testMayMapChildren()
+  {
+    index = new MappingIndex();
+    index.add(PROJECT_ROOT + "/web", DEST_ROOT + "/web");
+    index.add(PROJECT_ROOT + "/out/classes/", DEST_ROOT + "/classes/");
+    index.add(PROJECT_ROOT + "/build/app.jar", DEST_ROOT + "/lib/app.jar");
+
+    // Parents of mappings
+    assertTrue(index.mayMapChildren("c:/"));
+    assertTrue(index.mayMapChildren(PROJECT_ROOT));
+    assertTrue(index.mayMapChildren(PROJECT_ROOT + "/OUT"));
+    assertTrue(index.mayMapChildren(PROJECT_ROOT + "/build"));
+
+    // Mapped directories and their children
+    assertTrue(index.mayMapChildren(PROJECT_ROOT + "/web"));
+    assertTrue(index.mayMapChildren(PROJECT_ROOT + "/web/node_modules/lib"));
+    assertTrue(index.mayMapChildren(PROJECT_ROOT + "/out/classes"));
+
+    // Directories out of any mapping
+    assertFalse(index.mayMapChildren(PROJECT_ROOT + "/node_modules"));
+    assertFalse(index.mayMapChildren(PROJECT_ROOT + "/.git"));
+    assertFalse(index.mayMapChildren(PROJECT_ROOT + "/webapp"));
+    assertFalse(index.mayMapChildren(PROJECT_ROOT + "/out/test"));
+    assertFalse(index.mayMapChildren("c:/Project10"));
+  }
+
+  public void testMayMapChildrenOfSourceDir()
+  {
+    // Only the output directory is mapped
+    index = new MappingIndex();
+    index.add("c:/project/classes", "d:/deployed/WEB-INF/classes");
+
+    assertFalse(index.mayMapChildren("c:/project/src/pack1"));
+    assertTrue(index.mayMapChildren("c:/project/src", "c:/project/classes"));
+    assertTrue(index.mayMapChildren("c:/project/src/pack1",
+      "c:/project/classes/pack1"));
+
+    // Not a source directory, or sources compiled out of any mapping
+    assertFalse(index.mayMapChildren("c:/project/doc", null));
+    assertFalse(index.mayMapChildren("c:/project/test/pack1",
+      "c:/project/test-classes/pack1"));
+  }
+
+  public void testContainsMappedPath()
+  {
+    assertTrue(index.containsMappedPath(PROJECT_ROOT));
+    assertTrue(index.containsMappedPath(PROJECT_ROOT + "/dir2"));
+    assertTrue(index.containsMappedPath(PROJECT_ROOT + "/DIR1"));
+    assertFalse(index.containsMappedPath(PROJECT_ROOT + "/dir1/sub"));
+    assertFalse(index.containsMappedPath(PROJECT_ROOT + "/dir3"));
+  }
+}
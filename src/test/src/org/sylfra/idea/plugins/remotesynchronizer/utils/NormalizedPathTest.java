@@ -0,0 +1,71 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+public class NormalizedPathTest extends TestCase
+{
+  public void testTrailingSeparatorIsDropped()
+  {
+    assertEquals("c:/project/src", new NormalizedPath("c:/project/src/").getPath());
+    assertEquals("/", new NormalizedPath("/").getPath());
+  }
+
+  public void testEqualsIgnoresCase()
+  {
+    NormalizedPath path = new NormalizedPath("C:/Project/Src");
+
+    assertEquals("C:/Project/Src", path.getPath());
+    assertEquals("c:/project/src", path.getFoldedPath());
+    assertEquals(new NormalizedPath("c:/project/src/"), path);
+    assertEquals(new NormalizedPath("c:/project/src").hashCode(), path.hashCode());
+  }
+
+  public void testStartsWith()
+  {
+    NormalizedPath path = new NormalizedPath("c:/Project/src/Foo.java");
+
+    assertTrue(path.startsWith(new NormalizedPath("C:/project")));
+    assertTrue(path.startsWith(new NormalizedPath("c:/project/src/")));
+    assertTrue(path.startsWith(path));
+    assertTrue(path.startsWith("c:/project/"));
+    assertFalse(path.startsWith(new NormalizedPath("c:/project/sr")));
+    assertFalse(path.startsWith(new NormalizedPath("c:/project/src/Foo.java2")));
+  }
+
+  public void testGetRelativePath()
+  {
+    NormalizedPath path = new NormalizedPath("c:/project/src/Foo.java");
+
+    assertEquals("src/Foo.java", path.getRelativePath(new NormalizedPath("C:/Project")));
+    assertEquals("", path.getRelativePath(path));
+    assertNull(path.getRelativePath(new NormalizedPath("c:/other")));
+    assertEquals("project/src/Foo.java",
+      path.getRelativePath(new NormalizedPath("c:/")));
+  }
+
+  public void testGetPrefixLength()
+  {
+    NormalizedPath path = new NormalizedPath("c:/ab/cd");
+
+    assertEquals(6, path.getPrefixLength(8));
+    assertEquals(5, path.getPrefixLength(6));
+    assertEquals(3, path.getPrefixLength(5));
+    assertEquals(2, path.getPrefixLength(3));
+    assertEquals(-1, path.getPrefixLength(2));
+  }
+
+  public void testTreeOrder()
+  {
+    NormalizedPath[] paths = {
+      new NormalizedPath("c:/src-gen"), new NormalizedPath("c:/src/b"),
+      new NormalizedPath("c:/src"), new NormalizedPath("c:/Src/a")};
+    Arrays.sort(paths, NormalizedPath.TREE_ORDER);
+
+    assertEquals("c:/src", paths[0].getPath());
+    assertEquals("c:/Src/a", paths[1].getPath());
+    assertEquals("c:/src/b", paths[2].getPath());
+    assertEquals("c:/src-gen", paths[3].getPath());
+  }
+}
@@ -0,0 +1,61 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import junit.framework.TestCase;
+
+public class PathPrefixSetTest extends TestCase
+{
+  public void testEmpty()
+  {
+    PathPrefixSet set = new PathPrefixSet(new String[0]);
+
+    assertTrue(set.isEmpty());
+    assertFalse(set.contains("c:/project/Foo.java"));
+  }
+
+  public void testContains()
+  {
+    PathPrefixSet set = new PathPrefixSet(new String[]{
+      "c:/project/src", "c:/project/web/index.jsp", "c:/project/lib/"});
+
+    assertTrue(set.contains("c:/project/src"));
+    assertTrue(set.contains("c:/project/src/org/Foo.java"));
+    assertTrue(set.contains("c:/project/web/index.jsp"));
+    assertTrue(set.contains("c:/project/lib/a.jar"));
+
+    assertFalse(set.contains("c:/project"));
+    assertFalse(set.contains("c:/project/src2/Foo.java"));
+    assertFalse(set.contains("c:/project/web/index.jsp2"));
+    assertFalse(set.contains("c:/project/web"));
+    assertFalse(set.contains("c:/other"));
+  }
+
+  public void testIgnoresCase()
+  {
+    PathPrefixSet set = new PathPrefixSet(new String[]{"c:/Project/Src"});
+
+    assertTrue(set.contains("C:/project/src/Foo.java"));
+  }
+
+  public void testNestedPathsAreDropped()
+  {
+    PathPrefixSet set = new PathPrefixSet(new String[]{
+      "c:/project/src/org", "c:/project/src", "c:/project/src/org/Foo.java",
+      "c:/project/src", "c:/project/web"});
+
+    assertEquals(2, set.size());
+    assertTrue(set.contains("c:/project/src/Bar.java"));
+  }
+
+  public void testSiblingSortedBetween()
+  {
+    // "src-gen/" sorts between "src" and "src/", "src.old/" after them
+    PathPrefixSet set = new PathPrefixSet(new String[]{
+      "c:/project/src", "c:/project/src-gen", "c:/project/src.old"});
+
+    assertEquals(3, set.size());
+    assertTrue(set.contains("c:/project/src/Foo.java"));
+    assertTrue(set.contains("c:/project/src-gen/Foo.java"));
+    assertTrue(set.contains("c:/project/src.old/Foo.java"));
+    assertFalse(set.contains("c:/project/src2/Foo.java"));
+  }
+}
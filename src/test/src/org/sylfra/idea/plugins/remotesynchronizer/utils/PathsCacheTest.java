@@ -0,0 +1,63 @@
+package org.sylfra.idea.plugins.remotesynchronizer.utils;
+
+import junit.framework.TestCase;
+
+public class PathsCacheTest extends TestCase
+{
+  private static final Object TARGET1 = new Object();
+  private static final Object TARGET2 = new Object();
+
+  public void testGetStoredPath()
+  {
+    PathsCache cache = new PathsCache(1000);
+    cache.put(TARGET1, 0, "c:/project/classes/Foo.class", "r:/remote/Foo.class");
+
+    assertEquals("r:/remote/Foo.class", cache.get(TARGET1, 0, "c:/project/classes/Foo.class"));
+    assertNull(cache.get(TARGET1, 0, "c:/project/classes/Bar.class"));
+    assertNull(cache.get(TARGET1, 0, "c:/project/classesFoo.class"));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+  }
+
+  public void testPathWithoutParent()
+  {
+    PathsCache cache = new PathsCache(1000);
+    cache.put(TARGET1, 0, "Foo.class", "r:/remote/Foo.class");
+
+    assertEquals("r:/remote/Foo.class", cache.get(TARGET1, 0, "Foo.class"));
+  }
+
+  public void testOwnersAndKindsAreSeparated()
+  {
+    PathsCache cache = new PathsCache(1000);
+    cache.put(TARGET1, 0, "c:/project/Foo.txt", "r:/remote1/Foo.txt");
+    cache.put(TARGET2, 0, "c:/project/Foo.txt", "r:/remote2/Foo.txt");
+
+    assertEquals("r:/remote1/Foo.txt", cache.get(TARGET1, 0, "c:/project/Foo.txt"));
+    assertEquals("r:/remote2/Foo.txt", cache.get(TARGET2, 0, "c:/project/Foo.txt"));
+    assertNull(cache.get(TARGET1, 1, "c:/project/Foo.txt"));
+  }
+
+  public void testSizeIsBounded()
+  {
+    PathsCache cache = new PathsCache(160);
+    for (int i = 0; i < 1000; i++)
+    {
+      cache.put(TARGET1, 0, "c:/project/dir" + (i % 10) + "/file" + i, "r:/remote/file" + i);
+    }
+
+    assertTrue(cache.getSize() <= 160);
+    assertEquals(1000 - cache.getSize(), cache.getEvictionCount());
+    assertEquals("r:/remote/file999", cache.get(TARGET1, 0, "c:/project/dir9/file999"));
+  }
+
+  public void testClear()
+  {
+    PathsCache cache = new PathsCache(1000);
+    cache.put(TARGET1, 0, "c:/project/Foo.txt", "r:/remote/Foo.txt");
+    cache.clear();
+
+    assertEquals(0, cache.getSize());
+    assertNull(cache.get(TARGET1, 0, "c:/project/Foo.txt"));
+  }
+}